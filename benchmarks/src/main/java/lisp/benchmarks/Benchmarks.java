@@ -0,0 +1,21 @@
+package lisp.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of benchmarks.jar. Takes the same arguments as JMH (like a regular
+ * expression to select benchmarks) and always adds the GC profiler, so allocation
+ * rate and number of garbage collections are reported with the throughput.
+ * @author: Ashwini Joshi
+*/
+public class Benchmarks{
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException{
+		CommandLineOptions options = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,243 @@
+package lisp.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Runs the programs of the corpus (see corpus/budgets.txt) through Main exactly like
+ * batch mode does, so reading, parsing, evaluating and printing are all measured.
+ * Each program runs in its own JVM, which records wall time, peak heap usage and
+ * garbage collections of the run. Output is compared with the golden file of the
+ * program and the results are written to a JSON report. Exit status is 1 if any
+ * output differs, a program fails or takes longer than its time budget.
+ *
+ * Usage: CorpusRunner [-update] [-report file] [corpus directory]
+ *   -update writes the current output as the golden files instead of comparing.
+ * @author: Ashwini Joshi
+*/
+public class CorpusRunner{
+
+	// Program of the corpus and the result of running it
+	static class Program{
+		String file;
+		long budget;
+		List<String> options;
+
+		String status;
+		long wallMillis;
+		long peakHeapBytes;
+		long gcCount;
+		long gcMillis;
+		String error;
+
+		Program(String file, long budget, List<String> options){
+			this.file = file;
+			this.budget = budget;
+			this.options = options;
+		}
+	}
+
+	public static void main(String[] args) throws Exception{
+		if(args.length > 0 && args[0].equals("-child")){
+			runChild(args);
+			return;
+		}
+
+		boolean update = false;
+		File report = new File("corpus-report.json");
+		File directory = new File("corpus");
+		for(int i = 0; i < args.length; i++){
+			if(args[i].equals("-update"))
+				update = true;
+			else if(args[i].equals("-report"))
+				report = new File(args[++i]);
+			else
+				directory = new File(args[i]);
+		}
+
+		boolean passed = true;
+		List<Program> programs = readBudgets(new File(directory, "budgets.txt"));
+		for(Program program : programs){
+			run(directory, program, update);
+			passed = passed && program.status.equals("passed");
+			System.out.println(program.file + ": " + program.status + ", " + program.wallMillis + " ms (budget "
+				+ program.budget + " ms), peak heap " + (program.peakHeapBytes >> 20) + " MB, "
+				+ program.gcCount + " GCs" + (program.error == null ? "" : ", " + program.error));
+		}
+
+		writeReport(report, programs);
+		System.out.println("Report written to " + report);
+		if(!passed)
+			System.exit(1);
+	}
+
+	// Read the list of programs, skipping empty lines and comments
+	static List<Program> readBudgets(File budgets) throws IOException{
+		List<Program> programs = new ArrayList<>();
+		for(String line : Files.readAllLines(budgets.toPath(), StandardCharsets.UTF_8)){
+			line = line.trim();
+			if(line.isEmpty() || line.startsWith("#"))
+				continue;
+			String[] fields = line.split("\\s+");
+			programs.add(new Program(fields[0], Long.parseLong(fields[1]), Arrays.asList(fields).subList(2, fields.length)));
+		}
+		return programs;
+	}
+
+	// Run the program in a new JVM and check its output
+	static void run(File directory, Program program, boolean update) throws IOException, InterruptedException{
+		File input = new File(directory, program.file);
+		File golden = new File(directory, program.file.replaceFirst("\\.[^.]*$", "") + ".out");
+		File output = File.createTempFile("corpus", ".out");
+		File errors = File.createTempFile("corpus", ".err");
+		File stats = File.createTempFile("corpus", ".stats");
+		try{
+			List<String> command = new ArrayList<>();
+			command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(CorpusRunner.class.getName());
+			command.add("-child");
+			command.add(stats.getPath());
+			command.addAll(program.options);
+			command.add(input.getPath());
+
+			Process process = new ProcessBuilder(command).redirectOutput(output).redirectError(errors).start();
+			int exitCode = process.waitFor();
+
+			Properties properties = new Properties();
+			try(InputStream in = new FileInputStream(stats)){
+				properties.load(in);
+			}
+			program.wallMillis = Long.parseLong(properties.getProperty("wallMillis", "0"));
+			program.peakHeapBytes = Long.parseLong(properties.getProperty("peakHeapBytes", "0"));
+			program.gcCount = Long.parseLong(properties.getProperty("gcCount", "0"));
+			program.gcMillis = Long.parseLong(properties.getProperty("gcMillis", "0"));
+
+			byte[] actual = Files.readAllBytes(output.toPath());
+			if(exitCode != 0){
+				program.status = "failed";
+				List<String> lines = Files.readAllLines(errors.toPath(), StandardCharsets.UTF_8);
+				program.error = lines.isEmpty() ? "exit code " + exitCode : lines.get(0);
+			}
+			else if(update){
+				Files.write(golden.toPath(), actual);
+				program.status = "passed";
+			}
+			else if(!golden.exists() || !Arrays.equals(actual, Files.readAllBytes(golden.toPath()))){
+				program.status = "failed";
+				program.error = "output differs from " + golden.getName();
+			}
+			else if(program.wallMillis > program.budget){
+				program.status = "failed";
+				program.error = "time budget exceeded";
+			}
+			else{
+				program.status = "passed";
+			}
+		}
+		finally{
+			output.delete();
+			errors.delete();
+			stats.delete();
+		}
+	}
+
+	// Run Main with the given arguments in this JVM and write the measurements to the stats file
+	static void runChild(String[] args) throws Exception{
+		List<MemoryPoolMXBean> heap = new ArrayList<>();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() == MemoryType.HEAP){
+				pool.resetPeakUsage();
+				heap.add(pool);
+			}
+		}
+		long gcCount = -gcCount();
+		long gcMillis = -gcMillis();
+		String[] arguments = Arrays.copyOfRange(args, 2, args.length);
+
+		long start = System.nanoTime();
+		Class.forName("Main").getMethod("main", String[].class).invoke(null, (Object) arguments);
+		long wallMillis = (System.nanoTime() - start) / 1000000;
+
+		gcCount += gcCount();
+		gcMillis += gcMillis();
+		long peakHeapBytes = 0;
+		for(MemoryPoolMXBean pool : heap)
+			peakHeapBytes += pool.getPeakUsage().getUsed();
+
+		Properties properties = new Properties();
+		properties.setProperty("wallMillis", Long.toString(wallMillis));
+		properties.setProperty("peakHeapBytes", Long.toString(peakHeapBytes));
+		properties.setProperty("gcCount", Long.toString(gcCount));
+		properties.setProperty("gcMillis", Long.toString(gcMillis));
+		try(OutputStream out = new FileOutputStream(args[1])){
+			properties.store(out, null);
+		}
+	}
+
+	static long gcCount(){
+		long count = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, collector.getCollectionCount());
+		return count;
+	}
+
+	static long gcMillis(){
+		long time = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, collector.getCollectionTime());
+		return time;
+	}
+
+	static void writeReport(File report, List<Program> programs) throws IOException{
+		try(PrintWriter out = new PrintWriter(report, "UTF-8")){
+			out.println("{");
+			out.println("  \"programs\": [");
+			for(int i = 0; i < programs.size(); i++){
+				Program program = programs.get(i);
+				out.println("    {");
+				out.println("      \"file\": " + quote(program.file) + ",");
+				out.println("      \"options\": " + quote(String.join(" ", program.options)) + ",");
+				out.println("      \"status\": " + quote(program.status) + ",");
+				out.println("      \"wallMillis\": " + program.wallMillis + ",");
+				out.println("      \"budgetMillis\": " + program.budget + ",");
+				out.println("      \"peakHeapBytes\": " + program.peakHeapBytes + ",");
+				out.println("      \"gcCount\": " + program.gcCount + ",");
+				out.println("      \"gcMillis\": " + program.gcMillis + ",");
+				out.println("      \"error\": " + (program.error == null ? "null" : quote(program.error)));
+				out.println("    }" + (i + 1 < programs.size() ? "," : ""));
+			}
+			out.println("  ]");
+			out.println("}");
+		}
+	}
+
+	static String quote(String value){
+		StringBuilder quoted = new StringBuilder("\"");
+		for(char c : value.toCharArray()){
+			if(c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if(c < ' ')
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,82 @@
+package lisp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Evaluator.eval on classic workloads: fibonacci, ackermann, reversing and appending
+ * lists and a function with a long COND chain. Expressions are parsed once during
+ * setup, so only compiling and evaluating them is measured. Each workload is run
+ * with Java stack recursion and with the explicit stack (Machine). Results of pure
+ * functions are not kept, since every invocation evaluates the same call and would
+ * only look up the result of the first one (see MemoBenchmark).
+ * @author: Ashwini Joshi
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EvaluatorBenchmark{
+	@Param({"false", "true"})
+	boolean explicitStack;
+
+	Object evaluator;
+	Object fib;
+	Object ackermann;
+	Object reverse;
+	Object append;
+	Object condChain;
+
+	@Setup
+	public void setup(){
+		// Functions are defined in the DList of the evaluator used by the benchmarks
+		evaluator = Lisp.newEvaluator(explicitStack, false);
+		Lisp.eval(evaluator, "(DEFUN (FIB (N)) (COND ((LESS N 2) N) (T (PLUS (FIB (MINUS N 1)) (FIB (MINUS N 2))))))");
+		Lisp.eval(evaluator, "(DEFUN (ACK (M N)) (COND ((EQ M 0) (PLUS N 1)) ((EQ N 0) (ACK (MINUS M 1) 1)) "
+			+ "(T (ACK (MINUS M 1) (ACK M (MINUS N 1))))))");
+		// NIL arguments are not passed to user defined functions, so these stop at the last element
+		Lisp.eval(evaluator, "(DEFUN (REV (L A)) (COND ((NULL (CDR L)) (CONS (CAR L) A)) (T (REV (CDR L) (CONS (CAR L) A)))))");
+		Lisp.eval(evaluator, "(DEFUN (APP (X Y)) (COND ((NULL (CDR X)) (CONS (CAR X) Y)) (T (CONS (CAR X) (APP (CDR X) Y)))))");
+
+		// COND with 40 clauses, the last one is taken for N = 40
+		StringBuilder clauses = new StringBuilder();
+		for(int i = 1; i <= 40; i++)
+			clauses.append("((EQ N ").append(i).append(") ").append(i).append(") ");
+		Lisp.eval(evaluator, "(DEFUN (CLS (N)) (COND " + clauses + "))");
+		Lisp.eval(evaluator, "(DEFUN (LOOPC (N A)) (COND ((EQ N 0) A) (T (LOOPC (MINUS N 1) (PLUS A (CLS 40))))))");
+
+		fib = Lisp.parse("(FIB 20)");
+		ackermann = Lisp.parse("(ACK 2 200)");
+		reverse = Lisp.parse("(REV (QUOTE " + Lisp.list(1000) + ") (QUOTE (A)))");
+		append = Lisp.parse("(APP (QUOTE " + Lisp.list(500) + ") (QUOTE " + Lisp.list(500) + "))");
+		condChain = Lisp.parse("(LOOPC 1000 0)");
+	}
+
+	@Benchmark
+	public Object fib(){
+		return Lisp.eval(evaluator, fib);
+	}
+
+	@Benchmark
+	public Object ackermann(){
+		return Lisp.eval(evaluator, ackermann);
+	}
+
+	@Benchmark
+	public Object reverse(){
+		return Lisp.eval(evaluator, reverse);
+	}
+
+	@Benchmark
+	public Object append(){
+		return Lisp.eval(evaluator, append);
+	}
+
+	@Benchmark
+	public Object condChain(){
+		return Lisp.eval(evaluator, condChain);
+	}
+}
@@ -0,0 +1,150 @@
+package lisp.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Gives the benchmarks access to the interpreter. Classes of the interpreter are in the
+ * default package, which can't be imported from a package and JMH doesn't allow benchmarks
+ * in the default package. So they are called through method handles. The handles are
+ * static final, so the JIT compiler treats them as constants and inlines the calls.
+ * @author: Ashwini Joshi
+*/
+final class Lisp{
+	static final MethodHandle NEW_TOKENIZER;
+	static final MethodHandle HAS_MORE_TOKENS;
+	static final MethodHandle SKIP_TOKEN;
+	static final MethodHandle NEW_PARSER;
+	static final MethodHandle PARSE;
+	static final MethodHandle NEW_EVALUATOR;
+	static final MethodHandle EVAL;
+	static final MethodHandle DISPLAY_TREE;
+	static final MethodHandle PRINT_LIST_NOTATION;
+
+	static{
+		try{
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> tokenizer = Class.forName("Tokenizer");
+			Class<?> parser = Class.forName("Parser");
+			Class<?> evaluator = Class.forName("Evaluator");
+			Class<?> SExpression = Class.forName("SExpression");
+			Class<?> printer = Class.forName("Printer");
+
+			// All handles take and return Object, so they can be called with invokeExact
+			NEW_TOKENIZER = generic(lookup.findConstructor(tokenizer, MethodType.methodType(void.class, String.class)));
+			HAS_MORE_TOKENS = lookup.findVirtual(tokenizer, "hasMoreTokens", MethodType.methodType(boolean.class))
+				.asType(MethodType.methodType(boolean.class, Object.class));
+			SKIP_TOKEN = lookup.findVirtual(tokenizer, "skipToken", MethodType.methodType(void.class))
+				.asType(MethodType.methodType(void.class, Object.class));
+			NEW_PARSER = generic(lookup.findConstructor(parser, MethodType.methodType(void.class)));
+			PARSE = generic(lookup.findVirtual(parser, "parse", MethodType.methodType(SExpression, String.class)));
+			NEW_EVALUATOR = lookup.findConstructor(evaluator, MethodType.methodType(void.class, boolean.class, boolean.class))
+				.asType(MethodType.methodType(Object.class, boolean.class, boolean.class));
+			EVAL = generic(lookup.findVirtual(evaluator, "eval", MethodType.methodType(SExpression, SExpression)));
+			DISPLAY_TREE = generic(lookup.findVirtual(SExpression, "displayTree", MethodType.methodType(String.class)));
+			PRINT_LIST_NOTATION = lookup.findStatic(printer, "printListNotation", MethodType.methodType(void.class, SExpression, Appendable.class))
+				.asType(MethodType.methodType(void.class, Object.class, Appendable.class));
+		}
+		catch(ReflectiveOperationException e){
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private Lisp(){
+	}
+
+	static MethodHandle generic(MethodHandle handle){
+		return handle.asType(handle.type().generic());
+	}
+
+	// Read all tokens of the input and return their number
+	static int countTokens(String input){
+		try{
+			Object tokenizer = (Object) NEW_TOKENIZER.invokeExact((Object) input);
+			int count = 0;
+			while((boolean) HAS_MORE_TOKENS.invokeExact(tokenizer)){
+				SKIP_TOKEN.invokeExact(tokenizer);
+				count++;
+			}
+			return count;
+		}
+		catch(Throwable e){
+			throw failure(e);
+		}
+	}
+
+	// Parse the input into an SExpression
+	static Object parse(String input){
+		try{
+			Object parser = (Object) NEW_PARSER.invokeExact();
+			return (Object) PARSE.invokeExact(parser, (Object) input);
+		}
+		catch(Throwable e){
+			throw failure(e);
+		}
+	}
+
+	// Evaluator which keeps results of pure functions only if memoize is true (see Memo.java)
+	static Object newEvaluator(boolean explicitStack, boolean memoize){
+		try{
+			return (Object) NEW_EVALUATOR.invokeExact(explicitStack, memoize);
+		}
+		catch(Throwable e){
+			throw failure(e);
+		}
+	}
+
+	// Evaluate a parsed SExpression
+	static Object eval(Object evaluator, Object SExp){
+		try{
+			return (Object) EVAL.invokeExact(evaluator, SExp);
+		}
+		catch(Throwable e){
+			throw failure(e);
+		}
+	}
+
+	// Parse and evaluate the input, used to define functions before benchmarks
+	static Object eval(Object evaluator, String input){
+		return eval(evaluator, parse(input));
+	}
+
+	static String displayTree(Object SExp){
+		try{
+			return (String) (Object) DISPLAY_TREE.invokeExact(SExp);
+		}
+		catch(Throwable e){
+			throw failure(e);
+		}
+	}
+
+	static void printListNotation(Object SExp, Appendable out){
+		try{
+			PRINT_LIST_NOTATION.invokeExact(SExp, out);
+		}
+		catch(Throwable e){
+			throw failure(e);
+		}
+	}
+
+	// Parse and evaluation errors (customException) are checked exceptions of the interpreter
+	static RuntimeException failure(Throwable e){
+		if(e instanceof RuntimeException)
+			return (RuntimeException) e;
+		if(e instanceof Error)
+			throw (Error) e;
+		return new IllegalStateException(e);
+	}
+
+	// Build a list of n integers as input expression, like (0 1 2 ...)
+	static String list(int n){
+		StringBuilder input = new StringBuilder("(");
+		for(int i = 0; i < n; i++){
+			if(i > 0)
+				input.append(' ');
+			input.append(i % 1000);
+		}
+		return input.append(')').toString();
+	}
+}
@@ -0,0 +1,48 @@
+package lisp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Results of calls to pure functions (see Memo.java). hit evaluates a call whose result
+ * is already in the cache of the function, so it measures compiling the call and one
+ * lookup. fib defines FIB again before every call, which clears the cache, so it
+ * measures a memoized evaluation from the start, which takes linear time for FIB.
+ * Each benchmark is run with Java stack recursion and with the explicit stack (Machine).
+ * @author: Ashwini Joshi
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoBenchmark{
+	@Param({"false", "true"})
+	boolean explicitStack;
+
+	Object evaluator;
+	Object define;
+	Object fib;
+
+	@Setup
+	public void setup(){
+		evaluator = Lisp.newEvaluator(explicitStack, true);
+		define = Lisp.parse("(DEFUN (FIB (N)) (COND ((LESS N 2) N) (T (PLUS (FIB (MINUS N 1)) (FIB (MINUS N 2))))))");
+		Lisp.eval(evaluator, define);
+		fib = Lisp.parse("(FIB 25)");
+		Lisp.eval(evaluator, fib);
+	}
+
+	@Benchmark
+	public Object hit(){
+		return Lisp.eval(evaluator, fib);
+	}
+
+	@Benchmark
+	public Object fib(){
+		Lisp.eval(evaluator, define);
+		return Lisp.eval(evaluator, fib);
+	}
+}
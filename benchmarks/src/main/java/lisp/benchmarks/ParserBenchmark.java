@@ -0,0 +1,47 @@
+package lisp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parser.parse on a small expression, a list with 100000 elements and
+ * a list nested 10000 levels deep.
+ * @author: Ashwini Joshi
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark{
+	@Param({"small", "long", "deep"})
+	String input;
+
+	String expression;
+
+	@Setup
+	public void setup(){
+		if(input.equals("small")){
+			expression = "(DEFUN (FACT (N)) (COND ((EQ N 0) 1) (T (TIMES N (FACT (MINUS N 1))))))";
+		}
+		else if(input.equals("long")){
+			expression = Lisp.list(100000);
+		}
+		else{
+			StringBuilder builder = new StringBuilder();
+			for(int i = 0; i < 10000; i++)
+				builder.append("(A ");
+			builder.append("B");
+			for(int i = 0; i < 10000; i++)
+				builder.append(')');
+			expression = builder.toString();
+		}
+	}
+
+	@Benchmark
+	public Object parse(){
+		return Lisp.parse(expression);
+	}
+}
@@ -0,0 +1,43 @@
+package lisp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * displayTree (dot notation) and list notation of a function definition
+ * and of a list with 10000 elements.
+ * @author: Ashwini Joshi
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrinterBenchmark{
+	@Param({"small", "long"})
+	String input;
+
+	Object SExp;
+
+	@Setup
+	public void setup(){
+		if(input.equals("small"))
+			SExp = Lisp.parse("(DEFUN (FACT (N)) (COND ((EQ N 0) 1) (T (TIMES N (FACT (MINUS N 1))))))");
+		else
+			SExp = Lisp.parse(Lisp.list(10000));
+	}
+
+	@Benchmark
+	public String displayTree(){
+		return Lisp.displayTree(SExp);
+	}
+
+	@Benchmark
+	public int listNotation(){
+		StringBuilder output = new StringBuilder();
+		Lisp.printListNotation(SExp, output);
+		return output.length();
+	}
+}
@@ -0,0 +1,42 @@
+package lisp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of the Tokenizer on a small function definition and on a large input
+ * with many integers, symbols and braces.
+ * @author: Ashwini Joshi
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenizerBenchmark{
+	@Param({"small", "large"})
+	String input;
+
+	String expression;
+
+	@Setup
+	public void setup(){
+		if(input.equals("small")){
+			expression = "(DEFUN (FACT (N)) (COND ((EQ N 0) 1) (T (TIMES N (FACT (MINUS N 1))))))";
+		}
+		else{
+			// About 100000 tokens
+			StringBuilder builder = new StringBuilder();
+			for(int i = 0; i < 10000; i++)
+				builder.append("(CONS ").append(i).append(" (QUOTE (A . B)))\n");
+			expression = "(" + builder + ")";
+		}
+	}
+
+	@Benchmark
+	public int tokenize(){
+		return Lisp.countTokens(expression);
+	}
+}
@@ -1,16 +1,17 @@
 /**
- * This class maintains AList structure. It stores list of actual arguments while the
- * the function is being executed. Once execution is done, it removes those parameters
- * from the hashmap. Hashmap stores a list for each parameter since there can be multiple scopes.
+ * This class maintains AList structure. It stores actual arguments while the
+ * the function is being executed as a stack of frames (see Frame.java). Calling a
+ * function adds a new frame on top and once execution is done, the frame is removed.
+ * A tail call replaces the frame of the function making the call when possible.
+ * Parameters of the function being executed are read from the top frame using their
+ * index. Other variables are searched by name in the frames of the calling functions,
+ * latest first, so the most current value is taken like before.
  * @author: Ashwini Joshi
 */
 
-import java.util.HashMap;
-import java.util.ArrayList;
-
 public class AList{
-	// HashMap as AList
-	HashMap<String, ArrayList<SExpression>> aListMap = new HashMap<>();
+	// Frame of the function being executed, null at top level
+	Frame frame;
 
 	// Empty constructor
 	public AList(){
@@ -18,65 +19,67 @@ public class AList{
 	}
 
 
+	public SExpression getVal(int index){
+		// Return the value of parameter at given index from the current frame
+		return frame.values[index];
+	}
+
+
 	public SExpression getVal(SExpression SExp) throws customException{
 		// Return the most current value of the corresponding S-Expression atom
-		String name = SExp.name;
-		if(aListMap.containsKey(name)){
-			ArrayList <SExpression> list = aListMap.get(name);
-			return list.get(0);
-		}
-		else{
-			throw new customException("Unbound atom " + name, "Evaluation");
+		String name = SExp.getName();
+		for(Frame current = frame; current != null; current = current.previous){
+			int index = current.indexOf(name);
+			if(index >= 0)
+				return current.values[index];
 		}
+		throw new customException("Unbound atom " + name, "Evaluation");
 	}
 
 
-	public static ArrayList<SExpression> getArgumentsAsList(SExpression args) throws customException{
-		// This function converts S-Expression of arguments to a list for adding into AList structure
-		ArrayList <SExpression> arguments = new ArrayList<>();
-		while(!args.isNil()){
-			SExpression car = args.car();
-			if(!car.isNil())
-				arguments.add(car);
-			args = args.cdr();
+	public static SExpression[] getArguments(SExpression[] values){
+		// This function removes NIL arguments before adding them into AList structure
+		int count = 0;
+		for(int i = 0; i < values.length; i++){
+			if(!values[i].isNil())
+				count++;
+		}
+		if(count == values.length)
+			return values;
+
+		SExpression[] arguments = new SExpression[count];
+		count = 0;
+		for(int i = 0; i < values.length; i++){
+			if(!values[i].isNil())
+				arguments[count++] = values[i];
 		}
-
 		return arguments;
 	}
 
 
-	public void addPairs(String functionName, ArrayList<String> params, ArrayList<SExpression> args) throws customException{
-		// This function takes formal parameters and actual parameters as list and adds into AList structure
+	public void addPairs(Defun function, SExpression[] args, Frame caller) throws customException{
+		// This function takes actual parameters and adds them as a new frame to AList structure
 
-		int paramsSize = params.size();
-		int argsSize = args.size();
+		int paramsSize = function.parameters.size();
+		int argsSize = args.length;
 
 		// If sizes differ, raise appropriate error with function name
 		if(paramsSize != argsSize)
-			throw new customException("Function " + functionName + " expects " + paramsSize + " arguments. " + argsSize + " given. **", "Evaluation");
-
-		// Keep adding arguments one by one for each parameter at the front of the list 
-		for(int i = 0; i < paramsSize; i++){
-			String parameter = params.get(i);
-			SExpression argument = args.get(i);
-			ArrayList <SExpression> list = new ArrayList<>();
-			if(aListMap.containsKey(parameter))
-				list = aListMap.get(parameter);
-			list.add(0, argument);
-			aListMap.put(parameter, list);	
-		}		
-	}
+			throw new customException("Function " + function.functionName + " expects " + paramsSize + " arguments. " + argsSize + " given. **", "Evaluation");
 
+		// If the current frame is not of the caller, it is a tail call from the function of the
+		// current frame. Its frame can be removed if all its parameters are hidden by the new
+		// frame, since none of its values can be read after the call.
+		Frame previous = frame;
+		if(frame != caller && frame.isHiddenBy(function))
+			previous = frame.previous;
+
+		frame = new Frame(function, args, previous);
+	}
 
-	public void destroyPairs(ArrayList<String> params){
-		// After function execution, remove latest arguments from the AList structure
 
-		int paramsSize = params.size();
-		for(int i = 0; i < paramsSize; i++){
-			String parameter = params.get(i);
-			ArrayList <SExpression> list = aListMap.get(parameter);
-			list.remove(0);
-			aListMap.put(parameter, list);
-		}		
+	public void destroyPairs(Frame caller){
+		// After function execution, remove its frames from the AList structure
+		frame = caller;
 	}
-}
\ No newline at end of file
+}
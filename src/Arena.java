@@ -0,0 +1,124 @@
+/**
+ * This class stores non-atomic S-Expressions in two int arrays, one for the cars and one
+ * for the cdrs, instead of one Cons object for every cell. It is used by the parser when
+ * Main is started with the -arena option, so a large quoted input takes 8 bytes for every
+ * cell instead of a 24 byte object, and the garbage collector sees two arrays instead of
+ * millions of objects. Car and cdr of a cell are stored as tagged ints:
+ *	- ...xxx1: integer, value shifted left by one bit
+ *	- ...xx00: another cell of this arena, its index shifted left by two bits
+ *	- ...xx10: symbolic atom, its number (see symbolId) shifted left by two bits
+ *	- ...xx11: any other S-Expression (like an integer which doesn't fit in 31 bits),
+ *	  its index in the list of boxed S-Expressions shifted left by two bits
+ * Cells are given to the rest of the interpreter as ArenaCons objects, which only point
+ * to the arena and the index of the cell (see ArenaCons.java). Each parsed expression
+ * has its own arena, which is garbage collected once none of its cells are used.
+ * A new ArenaCons is created every time car or cdr gives a cell, so walking an arena
+ * allocates objects which walking Cons cells doesn't. The arena keeps the VIEWS last
+ * created ones by their index, so taking car or cdr of the same cell again (like
+ * (NULL (CDR L)) followed by (F (CDR L))) gives the same object without allocating.
+ * Cells are never changed once they are added, and one arena is used by only one thread.
+ * @author: Ashwini Joshi
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class Arena{
+	static final int INTEGER = 1;
+	static final int CELL = 0;
+	static final int SYMBOL = 2;
+	static final int BOXED = 3;
+
+	// Symbolic atoms by their number, shared by all arenas
+	static volatile SExpression[] symbols = new SExpression[256];
+	static int symbolCount;
+
+	// Car and cdr of the cells
+	int[] cars = new int[16];
+	int[] cdrs = new int[16];
+	int size;
+	// S-Expressions which cannot be stored in an int
+	ArrayList<SExpression> boxed = new ArrayList<>();
+	// Last ArenaCons created for cells, by their index modulo VIEWS
+	static final int VIEWS = 64;
+	ArenaCons[] views;
+
+	// Add a new cell and return it
+	public ArenaCons cons(SExpression car, SExpression cdr){
+		if(size == cars.length){
+			cars = Arrays.copyOf(cars, size * 2);
+			cdrs = Arrays.copyOf(cdrs, size * 2);
+		}
+		cars[size] = encode(car);
+		cdrs[size] = encode(cdr);
+		return new ArenaCons(this, size++);
+	}
+
+	// Release the space left at the end of the arrays once no more cells will be added
+	public void trim(){
+		cars = Arrays.copyOf(cars, size);
+		cdrs = Arrays.copyOf(cdrs, size);
+	}
+
+	int encode(SExpression SExp){
+		if(SExp.isInteger()){
+			int val = ((IntegerAtom) SExp).val;
+			if(val >= -(1 << 30) && val < (1 << 30))
+				return (val << 1) | INTEGER;
+		}
+		else if(SExp.isSymbol()){
+			return (symbolId((SymbolicAtom) SExp) << 2) | SYMBOL;
+		}
+		else if(SExp instanceof ArenaCons && ((ArenaCons) SExp).arena == this){
+			return (((ArenaCons) SExp).index << 2) | CELL;
+		}
+
+		boxed.add(SExp);
+		return ((boxed.size() - 1) << 2) | BOXED;
+	}
+
+	SExpression decode(int value){
+		if((value & INTEGER) != 0)
+			return IntegerAtom.valueOf(value >> 1);
+
+		switch(value & 3){
+			case CELL:
+				return view(value >>> 2);
+			case SYMBOL:
+				return symbols[value >>> 2];
+			default:
+				return boxed.get(value >>> 2);
+		}
+	}
+
+	// ArenaCons for the cell, the same object as last time if it is still in the views
+	ArenaCons view(int index){
+		if(views == null)
+			views = new ArenaCons[VIEWS];
+		ArenaCons view = views[index & (VIEWS - 1)];
+		if(view == null || view.index != index){
+			view = new ArenaCons(this, index);
+			views[index & (VIEWS - 1)] = view;
+		}
+		return view;
+	}
+
+	// Number of the symbolic atom, given when it is first stored in an arena
+	static int symbolId(SymbolicAtom symbol){
+		int id = symbol.id;
+		if(id >= 0)
+			return id;
+
+		synchronized(Arena.class){
+			if(symbol.id < 0){
+				if(symbolCount == symbols.length)
+					symbols = Arrays.copyOf(symbols, symbolCount * 2);
+				symbols[symbolCount] = symbol;
+				// Number is set after the symbol is in the array, so other threads
+				// which see the number also find the symbol
+				symbol.id = symbolCount++;
+			}
+			return symbol.id;
+		}
+	}
+}
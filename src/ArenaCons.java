@@ -0,0 +1,49 @@
+/**
+ * This class represents a non-atomic S-Expression stored in an Arena. It only points to
+ * the arena and the index of the cell, and car and cdr are read from the arrays of the
+ * arena when they are needed. Many ArenaCons objects can point to the same cell, so
+ * equals() compares the cells. Like other non-atomic S-Expressions, it is never EQ.
+ * @author: Ashwini Joshi
+*/
+
+public final class ArenaCons extends SExpression{
+	final Arena arena;
+	final int index;
+
+	public ArenaCons(Arena arena, int index){
+		this.arena = arena;
+		this.index = index;
+	}
+
+	public SExpression car(){
+		return arena.decode(arena.cars[index]);
+	}
+
+	public SExpression cdr(){
+		return arena.decode(arena.cdrs[index]);
+	}
+
+	public boolean isAtom(){
+		return false;
+	}
+
+	public String getName(){
+		return null;
+	}
+
+	// Get dot notation for the SExpression
+	public String displayTree(){
+		StringBuilder output = new StringBuilder();
+		Printer.printDotNotation(this, output);
+		return output.toString();
+	}
+
+	// Same cell of the same arena
+	public boolean equals(Object other){
+		return other instanceof ArenaCons && ((ArenaCons) other).arena == arena && ((ArenaCons) other).index == index;
+	}
+
+	public int hashCode(){
+		return 31 * System.identityHashCode(arena) + index;
+	}
+}
@@ -0,0 +1,319 @@
+/**
+ * This class compiles an S-Expression into a tree of nodes (see Node.java).
+ * It does the same checks as eval does - QUOTE, COND, DEFUN, built-in
+ * functions and user defined functions are recognized by their name here, only once,
+ * instead of every time the expression is evaluated.
+ * Top level expressions are compiled before they are evaluated and function bodies
+ * are compiled when the function is defined using DEFUN. While compiling a function
+ * body, its parameters are replaced by their index in the frame of the function and
+ * calls to user defined functions in tail position (the value of the body or of a
+ * COND branch in tail position) are compiled as tail calls.
+ * Calls to built-in functions whose arguments are all constants are evaluated while
+ * compiling (constant folding) and COND clauses whose condition is a constant are
+ * removed or end the COND. Only calls which succeed are folded, so errors are
+ * still raised when the expression is evaluated.
+ * A small function is also compiled to be executed without a frame (inlined). Calls in
+ * its body are replaced by the bodies of the called functions found in the DList, if
+ * they are small and not recursive. Parameters of all these functions are read from one
+ * array of arguments and their free variables are found at compile time in the
+ * parameters of the functions which call them, same as the frames would give them.
+ * @author: Ashwini Joshi
+*/
+
+import java.util.HashMap;
+import java.util.ArrayList;
+
+public class Compiler{
+	// Map from name of the built-in function to its code in the Evaluator
+	static HashMap<String, Integer> builtins = new HashMap<>();
+
+	static{
+		builtins.put("CAR", Evaluator.CAR);
+		builtins.put("CDR", Evaluator.CDR);
+		builtins.put("CONS", Evaluator.CONS);
+		builtins.put("PLUS", Evaluator.PLUS);
+		builtins.put("MINUS", Evaluator.MINUS);
+		builtins.put("TIMES", Evaluator.TIMES);
+		builtins.put("QUOTIENT", Evaluator.QUOTIENT);
+		builtins.put("REMAINDER", Evaluator.REMAINDER);
+		builtins.put("LESS", Evaluator.LESS);
+		builtins.put("GREATER", Evaluator.GREATER);
+		builtins.put("ATOM", Evaluator.ATOM);
+		builtins.put("EQ", Evaluator.EQ);
+		builtins.put("NULL", Evaluator.NULL);
+		builtins.put("INT", Evaluator.INT);
+	}
+
+	// Maximum number of nodes in the body of a function which is inlined,
+	// including the bodies of the functions spliced into it
+	static final int INLINE_SIZE = 24;
+
+	// State shared by the compilers of an inlined function and the functions spliced into it
+	static class Inlining{
+		DList functions;
+		// Functions whose bodies are being compiled, a call to one of them is recursive
+		ArrayList<Defun> active = new ArrayList<>();
+		// Functions found in the DList by name, null if not defined. The inlined body is
+		// valid as long as the same functions are found (see Defun.inline)
+		HashMap<String, Defun> found = new HashMap<>();
+		// Number of arguments of all the functions and number of nodes of their bodies
+		int slots;
+		int size;
+		// True if a call cannot be spliced, so the function is not inlined
+		boolean failed;
+
+		Inlining(DList functions, Defun function){
+			this.functions = functions;
+			active.add(function);
+			slots = function.parameters.size();
+			size = function.size();
+		}
+
+		Defun find(String name){
+			if(!found.containsKey(name))
+				found.put(name, functions.dList.get(name));
+			return found.get(name);
+		}
+	}
+
+	// Formal parameters of the function being compiled, empty for top level expressions
+	ArrayList<String> parameters;
+	// Not null if the function is compiled to be executed without a frame (see Defun.execInline)
+	Inlining inlining;
+	// Index of the first parameter in the arguments of the inlined function
+	int base;
+	// Compiler of the function whose call is being spliced, null for the inlined function
+	Compiler outer;
+
+	public Compiler(ArrayList<String> parameters){
+		this.parameters = parameters;
+	}
+
+	public Compiler(ArrayList<String> parameters, Inlining inlining, int base, Compiler outer){
+		this.parameters = parameters;
+		this.inlining = inlining;
+		this.base = base;
+		this.outer = outer;
+	}
+
+	public Node compile(SExpression SExp){
+		return compile(SExp, false);
+	}
+
+	// Compile function body, its value is in tail position
+	public Node compileBody(SExpression SExp){
+		return compile(SExp, true);
+	}
+
+	public Node compile(SExpression SExp, boolean tail){
+		// Atoms - T, NIL and integers are constants, other symbols are variables
+		if(SExp.isAtom()){
+			if(SExp.isT() || SExp.isNil() || SExp.isInteger())
+				return new Node.Constant(SExp);
+
+			if(inlining != null)
+				return compileArgument(SExp);
+
+			// If a name is repeated in parameters, last one has the latest value
+			int index = parameters.lastIndexOf(SExp.getName());
+			if(index >= 0)
+				return new Node.Parameter(SExp, index);
+			else
+				return new Node.Variable(SExp);
+		}
+
+		// Car of the expression has to be a function name
+		if(!SExp.car().isSymbol())
+			return new Node.Failure("Not a LISP Expression! **");
+
+		String name = SExp.car().getName();
+		SExpression cdr = SExp.cdr();
+
+		if(name.equals("QUOTE"))
+			return compileQuote(SExp, cdr);
+		else if(name.equals("COND"))
+			return compileCond(SExp, cdr, tail);
+		else if(name.equals("DEFUN"))
+			return new Node.Define(cdr);
+		else
+			return compileApplication(SExp, name, cdr, tail);
+	}
+
+	// Variable of an inlined function. A free variable of a spliced function is the
+	// parameter of the function calling it, since its frame would be the next one.
+	public Node compileArgument(SExpression SExp){
+		for(Compiler compiler = this; compiler != null; compiler = compiler.outer){
+			int index = compiler.parameters.lastIndexOf(SExp.getName());
+			if(index >= 0)
+				return new Node.Argument(SExp, compiler.base + index);
+		}
+		return new Node.Variable(SExp);
+	}
+
+	public Node compileQuote(SExpression SExp, SExpression cdr){
+		String error;
+		try{
+			error = Evaluator.checkIfValidArgs("QUOTE", cdr);
+		}
+		catch(NullPointerException e){
+			return new Node.Malformed(SExp);
+		}
+
+		if(error != null)
+			return new Node.Failure(error);
+		return new Node.Constant(cdr.car());
+	}
+
+	public Node compileCond(SExpression SExp, SExpression be, boolean tail){
+		if(be.isNil())
+			return new Node.Failure("No arguments given to COND. **");
+
+		// Compile clauses until an invalid one is found, which becomes the error
+		// raised when none of the previous conditions is true
+		ArrayList<Node> conditions = new ArrayList<>();
+		ArrayList<Node> expressions = new ArrayList<>();
+		Node otherwise = null;
+
+		while(otherwise == null){
+			if(be.isNil()){
+				otherwise = new Node.Failure("Error in the boolean expression.** ");
+				break;
+			}
+
+			String error;
+			try{
+				error = Evaluator.checkIfValidArgs("EVCON", be.car());
+			}
+			catch(NullPointerException e){
+				otherwise = new Node.Malformed(SExp);
+				break;
+			}
+			if(error != null){
+				otherwise = new Node.Failure(error);
+				break;
+			}
+
+			Node condition = compile(be.car().car());
+			Node expression = compile(be.car().cdr().car(), tail);
+			be = be.cdr();
+
+			if(condition instanceof Node.Constant){
+				// Clause with a NIL condition is never taken and the clauses after a
+				// condition which is always true are never reached
+				if(!((Node.Constant) condition).value.isNil())
+					otherwise = expression;
+				continue;
+			}
+			conditions.add(condition);
+			expressions.add(expression);
+		}
+
+		// If no condition is left, value of the COND is always the otherwise part
+		if(conditions.isEmpty())
+			return otherwise;
+		return new Node.Cond(conditions, expressions, otherwise);
+	}
+
+	public Node compileApplication(SExpression SExp, String name, SExpression list, boolean tail){
+		// Compile arguments one by one till NIL occurs
+		ArrayList<Node> args = new ArrayList<>();
+		boolean dotted = false;
+		while(!list.isNil()){
+			if(list.isAtom()){
+				dotted = true;
+				break;
+			}
+			args.add(compile(list.car()));
+			list = list.cdr();
+		}
+
+		if(builtins.containsKey(name)){
+			int builtin = builtins.get(name);
+			// Arithmetic and comparison are evaluated without boxing the intermediate integers
+			if(builtin >= Evaluator.PLUS && builtin <= Evaluator.GREATER && args.size() == 2 && !dotted)
+				return fold(new Node.Arithmetic(SExp, name, builtin, args));
+			return fold(new Node.Builtin(SExp, name, builtin, args, dotted));
+		}
+		else if(inlining != null)
+			return splice(SExp, name, args, dotted);
+		else if(tail)
+			return new Node.TailCall(SExp, name, args, dotted);
+		else
+			return new Node.Call(SExp, name, args, dotted);
+	}
+
+	// Evaluate a call to a built-in function with constant arguments now, since it
+	// gives the same value every time. The call is kept if it raises an error.
+	public Node fold(Node.Builtin call){
+		if(call.dotted || call.arityError != null)
+			return call;
+
+		SExpression[] values = new SExpression[call.args.length];
+		for(int i = 0; i < values.length; i++){
+			if(!(call.args[i] instanceof Node.Constant))
+				return call;
+			values[i] = ((Node.Constant) call.args[i]).value;
+		}
+
+		try{
+			return new Node.Constant(Evaluator.apply(call.builtin, call.functionName, values));
+		}
+		catch(customException e){
+			return call;
+		}
+	}
+
+	// Replace a call in the body of an inlined function by the body of the called function.
+	// Its arguments are given the next free slots in the arguments of the inlined function.
+	// If the function is not defined, is recursive or makes the body too large, or the call
+	// may have a different number of arguments (dotted, or NIL arguments are removed),
+	// the inlining fails and the function is executed with a frame as usual.
+	public Node splice(SExpression SExp, String name, ArrayList<Node> args, boolean dotted){
+		Defun function = inlining.failed ? null : inlining.find(name);
+		if(function == null || dotted || args.size() != function.parameters.size()
+				|| inlining.active.contains(function) || function.size() < 0
+				|| (inlining.size += function.size()) > INLINE_SIZE){
+			inlining.failed = true;
+			return new Node.Call(SExp, name, args, dotted);
+		}
+
+		int slot = inlining.slots;
+		inlining.slots += args.size();
+		inlining.active.add(function);
+		Node body = new Compiler(function.parameters, inlining, slot, this).compileBody(function.funBody);
+		inlining.active.remove(inlining.active.size() - 1);
+		return new Node.Inlined(SExp, name, args, slot, body);
+	}
+
+	// Number of nodes in a compiled function body, -1 if it has a DEFUN.
+	// Only small bodies without DEFUN are inlined (see Defun.inline).
+	public static int inlineSize(Node node){
+		if(node instanceof Node.Define)
+			return -1;
+
+		int size = 1;
+		if(node instanceof Node.Cond){
+			Node.Cond cond = (Node.Cond) node;
+			for(int i = 0; i < cond.conditions.length; i++){
+				int condition = inlineSize(cond.conditions[i]);
+				int expression = inlineSize(cond.expressions[i]);
+				if(condition < 0 || expression < 0)
+					return -1;
+				size += condition + expression;
+			}
+			int otherwise = inlineSize(cond.otherwise);
+			if(otherwise < 0)
+				return -1;
+			size += otherwise;
+		}
+		else if(node instanceof Node.Application){
+			for(Node arg : ((Node.Application) node).args){
+				int argSize = inlineSize(arg);
+				if(argSize < 0)
+					return -1;
+				size += argSize;
+			}
+		}
+		return size;
+	}
+}
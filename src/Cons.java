@@ -0,0 +1,38 @@
+/**
+ * This class represents a non-atomic S-Expression. It only stores the car
+ * and cdr pointing to the left and the right children nodes.
+ * @author: Ashwini Joshi
+*/
+
+public final class Cons extends SExpression{
+	SExpression car, cdr;
+
+	// Non-atomic S-Expression
+	public Cons(SExpression car, SExpression cdr){
+		this.car = car;
+		this.cdr = cdr;
+	}
+
+	public SExpression car(){
+		return car;
+	}
+
+	public SExpression cdr(){
+		return cdr;
+	}
+
+	public boolean isAtom(){
+		return false;
+	}
+
+	public String getName(){
+		return null;
+	}
+
+	// Get dot notation for the SExpression
+	public String displayTree(){
+		StringBuilder output = new StringBuilder();
+		Printer.printDotNotation(this, output);
+		return output.toString();
+	}
+}
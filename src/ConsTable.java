@@ -0,0 +1,121 @@
+/**
+ * This class is the table of shared cons cells used for hash-consing (-hashcons option).
+ * S-Expressions are never changed, so structurally equal non-atomic S-Expressions can be
+ * the same object. When the table is enabled, every cons cell created by the parser and
+ * by CONS is looked up here first and the cell already in the table is returned if it has
+ * the same car and cdr. Since the car and cdr are themselves shared cells (or atoms), two
+ * cells are structurally equal exactly when their car and cdr are the same objects
+ * (integers are compared by value and cells of an Arena by the cell), so the lookup
+ * doesn't walk the whole S-Expression.
+ * Large quoted tables with repeated sublists then take memory only once, and structurally
+ * equal arguments are also the same key for the result cache of pure functions.
+ * EQ still returns NIL for non-atomic S-Expressions, as it does without hash-consing.
+ * The table holds the cells using weak references, so cells which are not used anymore
+ * are still garbage collected. It is shared by all sessions like the symbol table.
+ * @author: Ashwini Joshi
+*/
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+public class ConsTable{
+
+	// Cell in the table with the hash of its car and cdr
+	static class Entry extends WeakReference<Cons>{
+		int hash;
+		Entry next;
+
+		Entry(Cons cons, int hash, Entry next, ReferenceQueue<Cons> queue){
+			super(cons, queue);
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+
+	// Buckets of the hash table, the length is always a power of 2
+	Entry[] buckets = new Entry[1024];
+	int size;
+	// Entries whose cells were garbage collected
+	ReferenceQueue<Cons> collected = new ReferenceQueue<>();
+
+	// Number of cells created and number of times an existing cell was returned
+	long created;
+	long shared;
+
+	// Return the shared cell with given car and cdr, created if it is not in the table
+	public synchronized Cons intern(SExpression car, SExpression cdr){
+		removeCollected();
+
+		int hash = 31 * hash(car) + hash(cdr);
+		int index = hash & (buckets.length - 1);
+		for(Entry entry = buckets[index]; entry != null; entry = entry.next){
+			if(entry.hash != hash)
+				continue;
+			Cons cons = entry.get();
+			if(cons != null && same(cons.car, car) && same(cons.cdr, cdr)){
+				shared++;
+				return cons;
+			}
+		}
+
+		Cons cons = new Cons(car, cdr);
+		buckets[index] = new Entry(cons, hash, buckets[index], collected);
+		created++;
+		if(++size > buckets.length / 4 * 3)
+			resize();
+		return cons;
+	}
+
+	static int hash(SExpression SExp){
+		if(SExp.isInteger())
+			return ((IntegerAtom) SExp).val;
+		return SExp.hashCode();
+	}
+
+	static boolean same(SExpression SExp1, SExpression SExp2){
+		if(SExp1 == SExp2 || SExp1.equals(SExp2))
+			return true;
+		return SExp1.isInteger() && SExp2.isInteger() && ((IntegerAtom) SExp1).val == ((IntegerAtom) SExp2).val;
+	}
+
+	// Number of cells in the table
+	public synchronized int size(){
+		removeCollected();
+		return size;
+	}
+
+	// Remove entries of the cells which were garbage collected
+	void removeCollected(){
+		Object reference;
+		while((reference = collected.poll()) != null){
+			Entry removed = (Entry) reference;
+			int index = removed.hash & (buckets.length - 1);
+			Entry previous = null;
+			for(Entry entry = buckets[index]; entry != null; previous = entry, entry = entry.next){
+				if(entry == removed){
+					if(previous == null)
+						buckets[index] = entry.next;
+					else
+						previous.next = entry.next;
+					size--;
+					break;
+				}
+			}
+		}
+	}
+
+	void resize(){
+		Entry[] old = buckets;
+		buckets = new Entry[old.length * 2];
+		for(int i = 0; i < old.length; i++){
+			Entry entry = old[i];
+			while(entry != null){
+				Entry next = entry.next;
+				int index = entry.hash & (buckets.length - 1);
+				entry.next = buckets[index];
+				buckets[index] = entry;
+				entry = next;
+			}
+		}
+	}
+}
@@ -1,28 +1,31 @@
 /** 
  * This class is for maintaining DList. Whenever a new function is defined using DEFUN,
  * it is added into dList hashmap along with its name.
+ * Every Evaluator has its own DList, so functions defined in one session of the
+ * interpreter are not seen by the other sessions.
+ * Version of the DList changes whenever a function is added, so that function calls
+ * can keep the Defun they found and look it up again only if the version changed.
  * @Author: Ashwini Joshi
 */
 
 import java.util.HashMap;
-import java.util.ArrayList;
 
 public class DList{
 	// Map to store functions 
-	public static HashMap <String, Defun> dList = new HashMap<>();
+	HashMap <String, Defun> dList = new HashMap<>();
+	// Incremented every time a function is defined or redefined
+	int version;
 
 	// Add Defun object contaning function deifnition and formal paramaters as a value for function name as key
-	public static void addFunction(String functionName, Defun function){
+	public void addFunction(String functionName, Defun function){
 		dList.put(functionName, function);
+		version++;
 	}
 
 	// Return Defun object for corresponding function name
-	public static Defun getFunction(String functionName) throws customException{
-		Defun defun = null;
-		if(dList.containsKey(functionName))
-			defun = dList.get(functionName);
-
-		return defun;
+	public Defun getFunction(String functionName) throws customException{
+		// null if not defined
+		return dList.get(functionName);
 	}
 
-}
\ No newline at end of file
+}
@@ -1,8 +1,17 @@
 /**
  * This class stores user defined function as objects. It has name, 
  * formal parameters as a list anf function body as S-Expression.
+ * Function body is also compiled into nodes when the function is defined.
+ * Small functions are also compiled to be inlined: a call to them executes the body
+ * with the arguments directly, without adding a frame to the AList. Calls to other small
+ * functions in the inlined body are replaced by their bodies (see Compiler.splice).
+ * The inlined body is compiled for the functions found in the DList, so it is checked
+ * again when the version of the DList changes, and since calls find the function again
+ * after every DEFUN, a redefined function is never executed using its old inlined body.
+ * Results of calls to a pure function are kept in its Memo (see Memo.java).
  * @Author: Ashwini Joshi
 */
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.ArrayList;
 
@@ -11,13 +20,112 @@ public class Defun{
 	String functionName;
 	ArrayList <String> parameters;
 	SExpression funBody;
+	Node body;
+	// Number of nodes of the body, -1 if it has a DEFUN (see Compiler.inlineSize)
+	int size;
+	// Body compiled to be executed without a frame, null if the function is not inlined.
+	// It is valid for the version of the DList it was compiled for.
+	Node inlineBody;
+	DList inlineDList;
+	int inlineVersion;
+	// Number of arguments of this function and the functions spliced into its inlined body
+	int inlineSlots;
+	// Functions found in the DList while compiling the inlined body
+	HashMap<String, Defun> inlineCallees;
+	// Results of earlier calls, used if the function is pure
+	Memo memo = new Memo(this);
 
 
 	// Constructor for creating Defun object
 	public Defun(String name, SExpression params, SExpression body) throws customException{
+		this(name, getParamsAsList(params), body);
+	}
+
+	// Constructor for a function loaded from a heap image (see HeapImage.java). Its
+	// parameters are already checked and the body is compiled when it is first used,
+	// so loading a large library doesn't compile functions which are never called.
+	public Defun(String name, ArrayList<String> params, SExpression body, boolean compile){
 		functionName = name;
-		parameters = getParamsAsList(params);
+		parameters = params;
 		funBody = body;
+		if(compile)
+			compile();
+	}
+
+	// Constructor for a function whose parameters are already checked
+	public Defun(String name, ArrayList<String> params, SExpression body){
+		this(name, params, body, true);
+	}
+
+	void compile(){
+		body = new Compiler(parameters).compileBody(funBody);
+		size = Compiler.inlineSize(body);
+	}
+
+	// Compiled function body
+	public Node body(){
+		if(body == null)
+			compile();
+		return body;
+	}
+
+	public int size(){
+		if(body == null)
+			compile();
+		return size;
+	}
+
+
+	// Check if a call with these arguments can use the inlined body. NIL arguments are
+	// removed before they are given to the function, so the call with a NIL argument
+	// or wrong number of arguments is executed as usual, which raises the same error.
+	public boolean canInline(Evaluator evaluator, SExpression[] args){
+		int size = size();
+		if(size < 0 || size > Compiler.INLINE_SIZE || args.length != parameters.size())
+			return false;
+		DList functions = evaluator.dList;
+		if(functions != inlineDList || functions.version != inlineVersion)
+			inline(functions);
+		if(inlineBody == null)
+			return false;
+		for(int i = 0; i < args.length; i++){
+			if(args[i].isNil())
+				return false;
+		}
+		return true;
+	}
+
+
+	// Compile the inlined body for the functions in the DList. If the same functions
+	// are found as last time, the body compiled before is still valid.
+	void inline(DList functions){
+		if(functions == inlineDList && inlineCallees != null){
+			boolean same = true;
+			for(String name : inlineCallees.keySet())
+				same &= functions.dList.get(name) == inlineCallees.get(name);
+			if(same){
+				inlineVersion = functions.version;
+				return;
+			}
+		}
+
+		Compiler.Inlining inlining = new Compiler.Inlining(functions, this);
+		Node node = new Compiler(parameters, inlining, 0, null).compileBody(funBody);
+		inlineBody = inlining.failed || inlining.size > Compiler.INLINE_SIZE ? null : node;
+		inlineSlots = inlining.slots;
+		inlineCallees = inlining.found;
+		inlineDList = functions;
+		inlineVersion = functions.version;
+	}
+
+
+	// Execute the inlined body. Variables which are not parameters are searched in the
+	// frames of the calling functions, same as when the function has its own frame.
+	// The inlined body never calls execInline again (calls in it are spliced), so the
+	// arguments of the evaluator don't have to be restored.
+	public SExpression execInline(Evaluator evaluator, SExpression[] args) throws customException{
+		evaluator.inlineArgs = inlineSlots == args.length ? args : Arrays.copyOf(args, inlineSlots);
+		return inlineBody.exec(evaluator);
 	}
 
 
@@ -32,7 +140,7 @@ public class Defun{
 			if(car.isInteger())
 				throw new customException("Parameters to function must be symbolic atoms. **", "Evaluation");
 			//if(!car.isNil())
-			parameters.add(car.name);
+			parameters.add(car.getName());
 			params = params.cdr();
 		}
 
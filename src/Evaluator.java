@@ -40,201 +40,234 @@ import java.util.HashMap;
 import java.util.ArrayList;
 
 public class Evaluator{
+	// Codes of the built-in functions used by compiled function calls
+	static final int CAR = 0;
+	static final int CDR = 1;
+	static final int CONS = 2;
+	static final int PLUS = 3;
+	static final int MINUS = 4;
+	static final int TIMES = 5;
+	static final int QUOTIENT = 6;
+	static final int REMAINDER = 7;
+	static final int LESS = 8;
+	static final int GREATER = 9;
+	static final int ATOM = 10;
+	static final int EQ = 11;
+	static final int NULL = 12;
+	static final int INT = 13;
+
+	// Returned by a function body when it ends with a tail call
+	static final SExpression TAIL_CALL = new SymbolicAtom("TAIL CALL");
+
+	// Each Evaluator is a separate session of the interpreter with its own functions
+	// and actual arguments, so different Evaluators can be used by different threads
+	DList dList;
 	AList aList;
-
-	// Contructor to invoke new AList for each
+	// Function call and arguments of the tail call to be executed next
+	Node.Application tailCall;
+	SExpression[] tailArgs;
+	// Arguments of the inlined function being executed and of the functions spliced into it
+	// (see Defun.execInline)
+	SExpression[] inlineArgs;
+	// Calls to pure functions found and not found in their result cache (see Memo.java)
+	long memoHits;
+	long memoMisses;
+	// Results of top level expressions evaluated before (see ResultCache.java)
+	ResultCache resultCache = new ResultCache();
+
+	// Evaluate using Machine instead of Java stack
+	boolean explicitStack;
+	// Keep the results of calls to pure functions (see Memo.java)
+	boolean memoize = true;
+
+	// Contructor to invoke new DList and AList for each
 	public Evaluator(){
+		dList = new DList();
 		aList = new AList();
 	}
 
-	public SExpression eval(SExpression SExp) throws customException{
-		// This function implements eval function. 
+	public Evaluator(boolean explicitStack){
+		this();
+		this.explicitStack = explicitStack;
+	}
 
-		// If S-Expression is an atom, 
-		// it gets the value from either symbol table or AList
-		if(SExp.isAtom()){
-			if(SExp.isT() || SExp.isNil() || SExp.isInteger()){
-				return SExp;
-			}
-			else
-				return aList.getVal(SExp);
-		}
+	public Evaluator(boolean explicitStack, boolean memoize){
+		this(explicitStack);
+		this.memoize = memoize;
+	}
 
-		// If not atom, take car and check what kind of function it is.
-		else if(SExp.car().isSymbol()){
-			SExpression car = SExp.car();
-			SExpression cdr = SExp.cdr();
-			String name = car.name;
-
-			if(name.equals("QUOTE")){
-				// If valid arguments are given, just return cdr of the S-Expression
-				String error = checkIfValidArgs("QUOTE", cdr);
-				if(error != null)
-					throw new customException(error, "Evaluation");
-				else
-					return cdr.car();
-			}
-			else if(name.equals("COND")){
-				// For COND, call evcon
-				if(cdr.isNil())
-					throw new customException("No arguments given to COND. **", "Evaluation");
-				return evcon(cdr);
-			}
-			else if(name.equals("DEFUN")){
-				// If Defun, check if it defined properly with function name, parameters and body
-
-				String error = checkIfValidDefun(cdr);
-				if(error != null)
-					throw new customException(error, "Evaluation");
-
-				// If all arguments are valid, create a Defun object with name, params and body
-				SExpression functionName = cdr.car().car();
-				SExpression parameters = cdr.car().cdr().car();
-				SExpression funcBody = cdr.cdr().car();
-				Defun defun = new Defun(functionName.name, parameters, funcBody);
-				// Add the function to DList
-				DList.addFunction(functionName.name, defun);
-
-				return SExpression.getFromTable(functionName.name);
-			}
-			// else if(cdr.isSymbol())
-			// 	throw new customException("Could not evaluate" + SExp.displayTree() + " .**", "Evaluation");
-
-			else{
-				SExpression evlisResult;
-				try{
-					evlisResult = evlis(cdr);
-				}
-				catch(NullPointerException e){
-					throw new customException("Could not evaluate " + SExp.displayTree() + " **", "Evaluation");
-				}
-				return apply(car, evlisResult);
+	public SExpression eval(SExpression SExp) throws customException{
+		// This function implements eval function.
+		// S-Expression is compiled into nodes once which do the actual evaluation,
+		// eval and evcon are implemented by the nodes (see Node.java)
+		Node node = new Compiler(new ArrayList<String>()).compile(SExp);
+
+		// Evaluator is used for all expressions of the session, so frames of the functions
+		// which didn't return because of an error are removed once the evaluation ends
+		Frame top = aList.frame;
+		try{
+			if(explicitStack){
+				Machine machine = new Machine(this, node);
+				machine.run(Long.MAX_VALUE);
+				return machine.result();
 			}
+			return node.exec(this);
 		}
-		else{
-			throw new customException("Not a LISP Expression! **", "Evaluation");
+		finally{
+			aList.destroyPairs(top);
 		}
 	}
 
-
-	public SExpression evcon(SExpression be) throws customException{
-		// This function implemets evcon function.
-
-		if(be.isNil()){
-			throw new customException("Error in the boolean expression.** ", "Evaluation");
-		}
-
-		String error = checkIfValidArgs("EVCON", be.car());
-		if(error != null)
-			throw new customException(error, "Evaluation");
-
-		SExpression bool = be.car().car();
-		SExpression expression = be.car().cdr().car();
-		SExpression boolResult = eval(bool);
-
-		if(!boolResult.isNil()){
-			return eval(expression);
-		}
-		else{
-			return evcon(be.cdr());
-		}
+	public SExpression evalTopLevel(SExpression SExp) throws customException{
+		// Evaluate a top level expression given to the interpreter. If the same expression
+		// was evaluated before and no function was defined since then, the same result
+		// is returned without evaluating it again.
+		String key = ResultCache.key(SExp);
+		SExpression value = resultCache.get(dList, key);
+		if(value != null)
+			return value;
+
+		int version = dList.version;
+		value = eval(SExp);
+		resultCache.put(dList, version, key, value);
+		return value;
 	}
 
-	public SExpression evlis(SExpression list) throws customException{
-		// This function implements evlis
-		if(list.isNil())
-			return SExpression.getFromTable("NIL");
-
-		SExpression car = eval(list.car());
-		SExpression cdr = evlis(list.cdr());
-		return SExpression.cons(car, cdr);		
-	}
-
-	public SExpression apply(SExpression function, SExpression args) throws customException{
-		// This function applies appropriate function from arguments
-
-		// Check if function has valid arguments
-		String functionName = function.name;
-		String error = checkIfValidArgs(functionName, args);
+	public SExpression defun(SExpression definition) throws customException{
+		// If Defun, check if it defined properly with function name, parameters and body
+		String error = checkIfValidDefun(definition);
 		if(error != null)
 			throw new customException(error, "Evaluation");
 
-		// Check if function is in a list of built-in functions
-		if(functionName.equals("CAR"))
-			return args.car().car();
-
-		else if(functionName.equals("CDR"))
-			return args.car().cdr();
-
-		else if(functionName.equals("CONS"))
-			return SExpression.cons(args.car(), args.cdr().car());
-
-		else if(functionName.equals("PLUS"))
-			return SExpression.plus(args.car(), args.cdr().car());
-
-		else if(functionName.equals("MINUS"))
-			return SExpression.minus(args.car(), args.cdr().car());
+		// If all arguments are valid, create a Defun object with name, params and body
+		SExpression functionName = definition.car().car();
+		SExpression parameters = definition.car().cdr().car();
+		SExpression funcBody = definition.cdr().car();
+		Defun defun = new Defun(functionName.getName(), parameters, funcBody);
+		// Add the function to DList
+		dList.addFunction(functionName.getName(), defun);
 
-		else if(functionName.equals("TIMES"))
-			return SExpression.times(args.car(), args.cdr().car());
-
-		else if(functionName.equals("QUOTIENT"))
-			return SExpression.quotient(args.car(), args.cdr().car());
+		return SExpression.getFromTable(functionName.getName());
+	}
 
-		else if(functionName.equals("REMAINDER"))
-			return SExpression.remainder(args.car(), args.cdr().car());
+	public static SExpression apply(int builtin, String functionName, SExpression[] args) throws customException{
+		// This function applies the built-in function with given code to the arguments.
+		// Number of arguments is checked once by the Compiler (see Node.Builtin),
+		// so only the types of the arguments are checked here.
+
+		switch(builtin){
+			case CAR:
+				if(args[0].isAtom())
+					throw new customException("Invalid argument to CAR. " + args[0].getName() + " is an atom. **", "Evaluation");
+				return args[0].car();
+
+			case CDR:
+				if(args[0].isAtom())
+					throw new customException("Invalid argument to CDR. " + args[0].getName() + " is an atom. **", "Evaluation");
+				return args[0].cdr();
+
+			case CONS:
+				return SExpression.cons(args[0], args[1]);
+
+			case PLUS:
+				checkIntegers(functionName, args);
+				return SExpression.plus(args[0], args[1]);
+
+			case MINUS:
+				checkIntegers(functionName, args);
+				return SExpression.minus(args[0], args[1]);
+
+			case TIMES:
+				checkIntegers(functionName, args);
+				return SExpression.times(args[0], args[1]);
+
+			case QUOTIENT:
+				checkIntegers(functionName, args);
+				checkDivisor(((IntegerAtom) args[1]).val);
+				return SExpression.quotient(args[0], args[1]);
+
+			case REMAINDER:
+				checkIntegers(functionName, args);
+				checkDivisor(((IntegerAtom) args[1]).val);
+				return SExpression.remainder(args[0], args[1]);
+
+			case LESS:
+				checkIntegers(functionName, args);
+				return SExpression.less(args[0], args[1]);
+
+			case GREATER:
+				checkIntegers(functionName, args);
+				return SExpression.greater(args[0], args[1]);
+
+			case ATOM:
+				if(args[0].isAtom())
+					return SExpression.T;
+				else
+					return SExpression.NIL;
 
-		else if(functionName.equals("LESS"))
-			return SExpression.less(args.car(), args.cdr().car());
+			case EQ:
+				return SExpression.eq(args[0], args[1]);
 
-		else if(functionName.equals("GREATER"))
-			return SExpression.greater(args.car(), args.cdr().car());	
+			case NULL:
+				if(args[0].isNil())
+					return SExpression.T;
+				else
+					return SExpression.NIL;
 
-		else if(functionName.equals("ATOM")){
-			if(args.car().isAtom())
-				return SExpression.getFromTable("T");
-			else
-				return SExpression.getFromTable("NIL");		
+			default:
+				// INT
+				if(args[0].isInteger())
+					return SExpression.T;
+				else
+					return SExpression.NIL;
 		}
+	}
 
-		else if(functionName.equals("EQ"))
-			return SExpression.eq(args.car(), args.cdr().car());			
+	// Arguments of arithmetic and comparison functions must be integers
+	static void checkIntegers(String functionName, SExpression[] args) throws customException{
+		if(!args[0].isInteger() || !args[1].isInteger())
+			throw new customException("Arguments to " + functionName + " must be integer atoms. **", "Evaluation");
+	}
 
-		else if(functionName.equals("NULL")){
-			if(args.car().isNil())
-				return SExpression.getFromTable("T");
-			else
-				return SExpression.getFromTable("NIL");				
-		}
+	static void checkDivisor(int divisor) throws customException{
+		if(divisor == 0)
+			throw new customException("Cannot perform division with divisor value as 0", "Evaluation");
+	}
 
-		else if(functionName.equals("INT")){
-			if(args.car().isInteger())
-				return SExpression.getFromTable("T");
-			else 
-				return SExpression.getFromTable("NIL");
-		}
+	public SExpression applyFunction(Node.Application call, SExpression[] args) throws customException{
+		// This function applies user defined function from the DList.
+		// If the function body ends with a tail call, the called function is executed
+		// here in a loop instead of using a new Java stack frame for it.
+		Frame caller = aList.frame;
+		SExpression SExp;
 
-		// If not built-in, check if in the DList
-		else{
-			Defun defun = DList.getFunction(functionName);
+		while(true){
+			// Function found by the call last time is used if nothing was defined since then
+			Defun defun = call.resolve(this);
 
 			// If not in the DList, undefined function
 			if(defun == null)
-				throw new customException("Undefined function " + functionName + " . **", "Evaluation");
-
-			// Add arguments to AList
-			aList.addPairs(functionName, defun.parameters, AList.getArgumentsAsList(args));
-			// Execute the function
-			SExpression SExp = eval(defun.funBody);
-			// Remove the pairs from AList
-			aList.destroyPairs(defun.parameters);
-			return SExp;
+				throw new customException("Undefined function " + call.functionName + " . **", "Evaluation");
+
+			// Add arguments to AList as a new frame
+			aList.addPairs(defun, AList.getArguments(args), caller);
+			// Execute the compiled function body
+			SExp = defun.body().exec(this);
+			if(SExp != TAIL_CALL)
+				break;
+
+			call = tailCall;
+			args = tailArgs;
 		}
+
+		// Remove the frames from AList
+		aList.destroyPairs(caller);
+		return SExp;
 	}
 
 	// Helper function to check for valid arguments
 
-	public String checkIfValidDefun(SExpression defun){
+	public static String checkIfValidDefun(SExpression defun){
 		String error = null;
 
 		// Function name
@@ -268,11 +301,16 @@ public class Evaluator{
 		return error;
 	}
 
-	public String checkIfValidArgs(String function, SExpression args){
-		// Function to check if given functions had valid arguments
+	public static String checkIfValidArgs(String function, SExpression args){
+		// Function to check if given functions had valid number of arguments
+		return checkArity(function, countArgs(args));
+	}
+
+	public static String checkArity(String function, int numArgs){
+		// Function to check number of arguments of QUOTE, EVCON and built-in functions.
+		// It is used by the Compiler, since the number of arguments is known from the expression.
 
 		String error = null;
-		int numArgs = countArgs(args);
 		String functionName = function;
 
 		if(function.equals("PLUS") || function.equals("MINUS") || 
@@ -294,15 +332,11 @@ public class Evaluator{
 			case "CAR":
 				if(numArgs != 1)
 					error = "CAR expects exactly one argument. " + Integer.toString(numArgs) + " given. **";
-				else if(args.car().isAtom())
-					error =  "Invalid argument to CAR. " + args.car().getName() + " is an atom. **";
 				return error;
 
 			case "CDR":
 				if(numArgs != 1)
 					error = "CDR expects exactly one argument. " + Integer.toString(numArgs) + " given. **";
-				else if(args.car().isAtom())
-					error =  "Invalid argument to CDR. " + args.car().getName() + " is an atom. **";
 				return error;
 
 			case "CONS":
@@ -333,10 +367,6 @@ public class Evaluator{
 			case "BINARY":
 				if(numArgs != 2)
 					error = function + " expects exactly one argument. " + Integer.toString(numArgs) + " given. **";
-				else if(!args.car().isInteger() || !args.cdr().car().isInteger())
-					error = "Arguments to " + function + " must be integer atoms. **";
-				else if((function.equals("QUOTIENT") || function.equals("REMAINDER")) && args.cdr().car().val == 0)
-					error = "Cannot perform division with divisor value as 0";
 				return error;
 
 			default:
@@ -344,7 +374,7 @@ public class Evaluator{
 		}
 	}
 
-	public int countArgs(SExpression SExp){
+	public static int countArgs(SExpression SExp){
 		// This function just counts number of arguments using car till NIL occurs
 		int count = 0;
 		while(!SExp.isNil()){
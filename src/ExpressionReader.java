@@ -0,0 +1,100 @@
+/**
+ * This class reads input expressions one by one from a BufferedReader. Each expression
+ * ends with a line containing only '$' (or '$$' for the last one). It works as a Reader
+ * which returns the lines of the current expression, each followed by a new line, and then
+ * end of input. So the Parser reads the expression directly from the input and the lines
+ * don't have to be joined into a string first.
+ * @author: Ashwini Joshi
+*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+public class ExpressionReader extends Reader{
+	BufferedReader input;
+	// Current line and position in it, position equal to its length is the new line at the end
+	String line;
+	int position;
+	// True once the current expression is completely read
+	boolean ended;
+	// Line which ended the current expression ('$' or '$$'), null if input ended before it
+	String terminator;
+
+	public ExpressionReader(BufferedReader input){
+		this.input = input;
+		this.ended = true;
+		this.terminator = "$";
+	}
+
+	// Start reading next expression, returns false if there is no more input
+	public boolean nextExpression() throws IOException{
+		skipExpression();
+		if(terminator == null || terminator.equals("$$"))
+			return false;
+
+		ended = false;
+		terminator = null;
+		return true;
+	}
+
+	// Skip the rest of the current expression, for example after a parse error
+	public void skipExpression() throws IOException{
+		char[] skipped = new char[1024];
+		while(!ended)
+			read(skipped, 0, skipped.length);
+	}
+
+	// Check if the expression was ended by '$' or '$$'
+	public boolean isComplete(){
+		return ended && terminator != null;
+	}
+
+	// Check if the expression was ended by '$$'
+	public boolean isLast(){
+		return "$$".equals(terminator);
+	}
+
+	public int read(char[] buffer, int offset, int length) throws IOException{
+		if(ended)
+			return -1;
+
+		int count = 0;
+		while(count < length){
+			if(line == null){
+				line = input.readLine();
+				position = 0;
+				if(line == null){
+					ended = true;
+					break;
+				}
+				if(line.equals("$") || line.equals("$$")){
+					terminator = line;
+					line = null;
+					ended = true;
+					break;
+				}
+			}
+
+			if(position < line.length()){
+				int n = Math.min(length - count, line.length() - position);
+				line.getChars(position, position + n, buffer, offset + count);
+				position += n;
+				count += n;
+			}
+			else{
+				buffer[offset + count] = '\n';
+				count++;
+				line = null;
+			}
+		}
+
+		if(count == 0)
+			return -1;
+		return count;
+	}
+
+	public void close() throws IOException{
+		input.close();
+	}
+}
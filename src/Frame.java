@@ -0,0 +1,43 @@
+/**
+ * This class is an activation frame of a user defined function. Values of the actual
+ * arguments are stored in an array in the same order as the formal parameters, so a
+ * parameter is read using its index which is found by the Compiler when the function
+ * is defined. Each frame points to the frame of the function which called it.
+ * @author: Ashwini Joshi
+*/
+
+public class Frame{
+	// Function which is being executed
+	Defun function;
+	// Actual arguments, one for each formal parameter
+	SExpression[] values;
+	// Frame of the calling function, null at top level
+	Frame previous;
+
+	public Frame(Defun function, SExpression[] values, Frame previous){
+		this.function = function;
+		this.values = values;
+		this.previous = previous;
+	}
+
+	// Index of the parameter with given name, -1 if it is not a parameter of this function
+	public int indexOf(String name){
+		// If a name is repeated in parameters, last one has the latest value
+		for(int i = values.length - 1; i >= 0; i--){
+			if(name.equals(function.parameters.get(i)))
+				return i;
+		}
+		return -1;
+	}
+
+	// Check if every parameter of this frame is also a parameter of the given function
+	public boolean isHiddenBy(Defun other){
+		if(function == other)
+			return true;
+		for(int i = 0; i < values.length; i++){
+			if(!other.parameters.contains(function.parameters.get(i)))
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * This class writes the functions of a session and the symbol table to a binary image
+ * file (-dump-image option) and loads them from the image into new sessions (-image
+ * option), so a library of functions doesn't have to be tokenized, parsed and evaluated
+ * again every time the interpreter starts. The image is read using a memory-mapped file.
+ * Format of the image (all numbers are big endian ints):
+ *	- MAGIC and VERSION
+ *	- number of symbols, then the name of each symbol as length and UTF-8 bytes
+ *	- number of functions, then for each function its name (symbol number), number of
+ *	  parameters, each parameter (symbol number) and the function body
+ * S-Expressions are written in preorder: a CONS byte followed by its car and its cdr,
+ * an INTEGER byte followed by the value or a SYMBOL byte followed by the symbol number.
+ * Both writing and reading keep the pending parts on a stack instead of Java stack,
+ * so long lists in function bodies are handled like by the parser.
+ * Compiled nodes keep caches which belong to one session, so every session compiles the
+ * functions again, each function only when it is first called (see Defun.body()).
+ * The symbols are added to the symbol table only once, when the image is opened.
+ * @author: Ashwini Joshi
+*/
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class HeapImage{
+	// "LISP" and version of the format
+	static final int MAGIC = 0x4C495350;
+	static final int VERSION = 1;
+
+	// Kinds of S-Expressions in the image
+	static final byte INTEGER = 0;
+	static final byte SYMBOL = 1;
+	static final byte CONS = 2;
+
+	// Contents of the image file
+	ByteBuffer buffer;
+	// Symbols of the image by their number, added to the symbol table when the image is opened
+	SExpression[] symbols;
+	// Position of the functions in the image
+	int functions;
+
+	// Open the image and add its symbols to the symbol table
+	public HeapImage(Path path) throws IOException{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try{
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				throw new IOException("not a heap image of this version");
+
+			symbols = new SExpression[buffer.getInt()];
+			for(int i = 0; i < symbols.length; i++){
+				byte[] name = new byte[buffer.getInt()];
+				buffer.get(name);
+				symbols[i] = SExpression.getFromTable(new String(name, StandardCharsets.UTF_8));
+			}
+			functions = buffer.position();
+		}
+		catch(BufferUnderflowException | NegativeArraySizeException e){
+			throw new IOException("image is truncated");
+		}
+	}
+
+	// Define the functions of the image in the DList of the evaluator
+	public void load(Evaluator evaluator) throws IOException{
+		// Every session reads the image with its own position
+		ByteBuffer input = buffer.duplicate();
+		input.position(functions);
+
+		try{
+			int count = input.getInt();
+			for(int i = 0; i < count; i++){
+				String name = symbol(input).getName();
+				ArrayList<String> parameters = new ArrayList<>();
+				int numParams = input.getInt();
+				for(int j = 0; j < numParams; j++)
+					parameters.add(symbol(input).getName());
+				SExpression body = read(input);
+
+				evaluator.dList.addFunction(name, new Defun(name, parameters, body, false));
+			}
+		}
+		catch(BufferUnderflowException | ArrayIndexOutOfBoundsException e){
+			throw new IOException("image is truncated");
+		}
+	}
+
+	SExpression symbol(ByteBuffer input){
+		return symbols[input.getInt()];
+	}
+
+	// Read one S-Expression written by write()
+	SExpression read(ByteBuffer input) throws IOException{
+		// Cons cells whose car is being read (null) or whose cdr is being read (the car)
+		SExpression[] cars = new SExpression[16];
+		int size = 0;
+
+		while(true){
+			byte kind = input.get();
+			if(kind == CONS){
+				if(size == cars.length)
+					cars = Arrays.copyOf(cars, size * 2);
+				cars[size++] = null;
+				continue;
+			}
+
+			SExpression SExp;
+			if(kind == INTEGER)
+				SExp = IntegerAtom.valueOf(input.getInt());
+			else if(kind == SYMBOL)
+				SExp = symbol(input);
+			else
+				throw new IOException("invalid S-Expression in the image");
+
+			// Give the S-Expression to the cells waiting for it
+			while(true){
+				if(size == 0)
+					return SExp;
+				if(cars[size - 1] == null){
+					// Car is read, read the cdr next
+					cars[size - 1] = SExp;
+					break;
+				}
+				SExp = SExpression.cons(cars[--size], SExp);
+				cars[size] = null;
+			}
+		}
+	}
+
+	// Write the functions of the evaluator and all symbols to an image file
+	public static void dump(Evaluator evaluator, Path path) throws IOException{
+		// Number every symbol of the symbol table
+		HashMap<String, Integer> numbers = new HashMap<>();
+		ArrayList<String> names = new ArrayList<>(SExpression.map.keySet());
+		for(int i = 0; i < names.size(); i++)
+			numbers.put(names.get(i), i);
+
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), Main.BUFFER_SIZE))){
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			out.writeInt(names.size());
+			for(String name : names){
+				byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+
+			out.writeInt(evaluator.dList.dList.size());
+			for(Map.Entry<String, Defun> entry : evaluator.dList.dList.entrySet()){
+				Defun defun = entry.getValue();
+				out.writeInt(numbers.get(entry.getKey()));
+				out.writeInt(defun.parameters.size());
+				for(String parameter : defun.parameters)
+					out.writeInt(numbers.get(parameter));
+				write(out, defun.funBody, numbers);
+			}
+		}
+	}
+
+	// Write the S-Expression in preorder
+	static void write(DataOutputStream out, SExpression SExp, HashMap<String, Integer> numbers) throws IOException{
+		// Cdr parts left to be written once their car part is written
+		SExpression[] rest = new SExpression[16];
+		int size = 0;
+
+		while(true){
+			while(!SExp.isAtom()){
+				out.writeByte(CONS);
+				if(size == rest.length)
+					rest = Arrays.copyOf(rest, size * 2);
+				rest[size++] = SExp.cdr();
+				SExp = SExp.car();
+			}
+
+			if(SExp.isInteger()){
+				out.writeByte(INTEGER);
+				out.writeInt(((IntegerAtom) SExp).val);
+			}
+			else{
+				out.writeByte(SYMBOL);
+				out.writeInt(numbers.get(SExp.getName()));
+			}
+
+			if(size == 0)
+				return;
+			SExp = rest[--size];
+			rest[size] = null;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * This class represents an integer atom. It only stores the value of the integer.
+ * Integer atoms are never changed, so small integers which are used most of the time
+ * are created only once and kept in a cache. valueOf() should be used instead of the
+ * constructor. If counting is enabled, it also counts how many integer atoms are
+ * created and how many are taken from the cache.
+ * @author: Ashwini Joshi
+*/
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class IntegerAtom extends SExpression{
+	// Range of integers kept in the cache
+	static final int CACHE_LOW = -1024;
+	static final int CACHE_HIGH = 1024;
+	static final IntegerAtom[] cache = new IntegerAtom[CACHE_HIGH - CACHE_LOW + 1];
+
+	// Number of integer atoms created and taken from the cache, counted only if enabled
+	// since the counters are shared by all threads
+	static boolean counting;
+	static final LongAdder created = new LongAdder();
+	static final LongAdder reused = new LongAdder();
+
+	static{
+		for(int i = 0; i < cache.length; i++)
+			cache[i] = new IntegerAtom(CACHE_LOW + i);
+	}
+
+	int val;
+
+	// Create S-Expression of integer type
+	private IntegerAtom(int number){
+		val = number;
+	}
+
+	// Get S-Expression for the integer, from the cache if it is a small integer
+	public static IntegerAtom valueOf(int number){
+		if(number >= CACHE_LOW && number <= CACHE_HIGH){
+			if(counting)
+				reused.increment();
+			return cache[number - CACHE_LOW];
+		}
+		if(counting)
+			created.increment();
+		return new IntegerAtom(number);
+	}
+
+	public boolean isInteger(){
+		return true;
+	}
+
+	public String getName(){
+		return Integer.toString(val);
+	}
+
+	public String displayTree(){
+		return Integer.toString(val);
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ * This class evaluates compiled nodes without using Java stack for the recursion,
+ * similar to a CEK machine. Control is the node being evaluated (or the value just
+ * computed), environment is the AList and the continuation is a stack of pending
+ * work kept in an ArrayList on the heap:
+ *	- Clause: COND waiting for the value of its i-th condition
+ *	- Arguments: function call waiting for the value of its i-th argument
+ *	- Return: user defined function whose body is being evaluated, with the frame of its caller
+ *	  and the result cache of the function if it is pure (see Memo.java)
+ * So depth of the recursion is limited only by the memory. A call whose continuation
+ * is a Return is a tail call, and it doesn't push another Return.
+ * Since the whole state of the evaluation is in this object, it can be run for a given
+ * number of steps, suspended and resumed later by calling run() again.
+ * @author: Ashwini Joshi
+*/
+
+import java.util.ArrayList;
+
+public class Machine{
+
+	// COND waiting for the value of a condition
+	static class Clause{
+		Node.Cond cond;
+		int index;
+
+		Clause(Node.Cond cond, int index){
+			this.cond = cond;
+			this.index = index;
+		}
+	}
+
+	// Function call waiting for the value of an argument
+	static class Arguments{
+		Node.Application application;
+		SExpression[] values;
+		int index;
+
+		Arguments(Node.Application application){
+			this.application = application;
+			this.values = new SExpression[application.args.length];
+		}
+	}
+
+	// Function body being evaluated
+	static class Return{
+		Frame caller;
+		// Cache where the value of the call is kept once it returns, null if not used
+		Memo memo;
+		Memo.Key key;
+
+		Return(Frame caller){
+			this.caller = caller;
+		}
+	}
+
+	Evaluator evaluator;
+	// Node to be evaluated next, null if value has to be given to the continuation
+	Node node;
+	SExpression value;
+	// Continuation stack
+	ArrayList<Object> stack = new ArrayList<>();
+	// Current frame, kept here while the machine is suspended
+	Frame frame;
+	boolean finished;
+
+	public Machine(Evaluator evaluator, Node node){
+		this.evaluator = evaluator;
+		this.node = node;
+		this.frame = evaluator.aList.frame;
+	}
+
+	// Result of the evaluation once it is finished
+	public SExpression result(){
+		return value;
+	}
+
+	public boolean isFinished(){
+		return finished;
+	}
+
+	// Run the evaluation for at most given number of steps.
+	// Returns true if evaluation is finished.
+	public boolean run(long steps) throws customException{
+		AList aList = evaluator.aList;
+		Frame saved = aList.frame;
+		aList.frame = frame;
+		try{
+			while(!finished && steps-- > 0){
+				try{
+					step(aList);
+				}
+				catch(NullPointerException e){
+					// Like evlis, innermost function call whose arguments are being evaluated reports it
+					for(int i = stack.size() - 1; i >= 0; i--){
+						if(stack.get(i) instanceof Arguments){
+							SExpression SExp = ((Arguments) stack.get(i)).application.SExp;
+							throw new customException("Could not evaluate " + SExp.displayTree() + " **", "Evaluation");
+						}
+					}
+					throw e;
+				}
+			}
+		}
+		finally{
+			frame = aList.frame;
+			aList.frame = saved;
+		}
+		return finished;
+	}
+
+	void step(AList aList) throws customException{
+		if(node != null){
+			// Evaluate the node. Arithmetic without function calls in its arguments
+			// needs only a few Java stack frames, so it is evaluated directly.
+			if(node instanceof Node.Arithmetic && ((Node.Arithmetic) node).simple){
+				value = node.exec(evaluator);
+				node = null;
+			}
+			else if(node instanceof Node.Application){
+				Node.Application application = (Node.Application) node;
+				if(application.args.length == 0){
+					apply(aList, application, new SExpression[0]);
+				}
+				else{
+					stack.add(new Arguments(application));
+					node = application.args[0];
+				}
+			}
+			else if(node instanceof Node.Cond){
+				Node.Cond cond = (Node.Cond) node;
+				if(cond.conditions.length == 0){
+					node = cond.otherwise;
+				}
+				else{
+					stack.add(new Clause(cond, 0));
+					node = cond.conditions[0];
+				}
+			}
+			else{
+				// Constants, variables and other nodes which don't evaluate sub-expressions
+				value = node.exec(evaluator);
+				node = null;
+			}
+			return;
+		}
+
+		if(stack.isEmpty()){
+			finished = true;
+			return;
+		}
+
+		// Give the value to the continuation
+		Object top = stack.remove(stack.size() - 1);
+		if(top instanceof Arguments){
+			Arguments arguments = (Arguments) top;
+			arguments.values[arguments.index++] = value;
+			if(arguments.index < arguments.values.length){
+				stack.add(arguments);
+				node = arguments.application.args[arguments.index];
+			}
+			else{
+				apply(aList, arguments.application, arguments.values);
+			}
+		}
+		else if(top instanceof Clause){
+			Clause clause = (Clause) top;
+			Node.Cond cond = clause.cond;
+			if(!value.isNil()){
+				node = cond.expressions[clause.index];
+			}
+			else if(++clause.index < cond.conditions.length){
+				stack.add(clause);
+				node = cond.conditions[clause.index];
+			}
+			else{
+				node = cond.otherwise;
+			}
+		}
+		else{
+			// Function returned, remove its frames
+			Return frames = (Return) top;
+			aList.destroyPairs(frames.caller);
+			if(frames.memo != null)
+				frames.memo.put(frames.key, value);
+		}
+	}
+
+	void apply(AList aList, Node.Application application, SExpression[] values) throws customException{
+		if(application.dotted)
+			throw new customException("Could not evaluate " + application.SExp.displayTree() + " **", "Evaluation");
+
+		if(application instanceof Node.Builtin){
+			value = ((Node.Builtin) application).apply(evaluator, values);
+			node = null;
+			return;
+		}
+
+		Defun defun = application.resolve(evaluator);
+
+		// If not in the DList, undefined function
+		if(defun == null)
+			throw new customException("Undefined function " + application.functionName + " . **", "Evaluation");
+
+		// Small functions are executed without a frame
+		if(defun.canInline(evaluator, values)){
+			value = defun.execInline(evaluator, values);
+			node = null;
+			return;
+		}
+
+		// If this call is the last step of a function body, it replaces that function
+		Frame caller;
+		if(!stack.isEmpty() && stack.get(stack.size() - 1) instanceof Return){
+			caller = ((Return) stack.get(stack.size() - 1)).caller;
+		}
+		else{
+			caller = aList.frame;
+
+			// Value of a pure function may be known from an earlier call with same arguments
+			Return frames = new Return(caller);
+			if(evaluator.memoize && defun.memo.isEnabled(evaluator.dList)){
+				Memo.Key key = new Memo.Key(values);
+				value = defun.memo.get(evaluator, key);
+				if(value != null){
+					node = null;
+					return;
+				}
+				frames.memo = defun.memo;
+				frames.key = key;
+			}
+			stack.add(frames);
+		}
+
+		aList.addPairs(defun, AList.getArguments(values), caller);
+		node = defun.body();
+	}
+}
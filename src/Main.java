@@ -1,59 +1,240 @@
 /**
  * This is the main class of the lisp interpreter.
- * Takes input lisp expression from user, 
+ * Takes input lisp expression from user,
  * creates the s-expression tree internally
  * and prints s-expression in the dot notation.
  * Then it evaluates the parsed s-expression and displays the output.
+ * If file names are given as arguments, expressions are read from these files
+ * one after another (batch mode) instead of the standard input and all output
+ * is written through a large buffer. It can also be started as a server where
+ * every connection is a separate session (see Server.java).
  * @author: Ashwini Joshi
 */
 
-import java.util.Scanner;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 
 public class Main{
-	public static void main(String args[]){
-		System.out.println("Enter your input expressions:");
+	// Size of the buffers used for reading files and writing output in batch mode
+	static final int BUFFER_SIZE = 1 << 16;
 
-		Scanner scanner = new Scanner(System.in);
-		String input = "";
+	static boolean explicitStack = false;
+	static boolean memoize = true;
+	static boolean statistics = false;
+	static boolean echo = true;
+	static boolean listNotation = false;
+	// Address to serve sessions on, null if not started as a server
+	static SocketAddress serverAddress = null;
+	static int maxSessions = 1000;
+	// Heap image whose functions every session starts with, null if not given
+	static HeapImage image = null;
 
-		while(scanner.hasNextLine()){
-			// Read input until a '$'' occurs
-			String line = scanner.nextLine();
+	public static void main(String args[]) throws IOException{
+		// Options: -stack evaluates using an explicit stack on the heap (see Machine.java)
+		//          -nomemo doesn't keep the results of calls to pure functions (see Memo.java)
+		//          -stats prints statistics of the interpreter at the end
+		//          -noecho doesn't print the dot notation of the input expressions
+		//          -list prints evaluation results in list notation like (1 2 3) instead of dot notation
+		//          -hashcons shares structurally equal cons cells (see ConsTable.java)
+		//          -arena stores parsed expressions in int arrays instead of objects (see Arena.java)
+		//          -port N serves sessions on local TCP port N instead of standard input (see Server.java)
+		//          -socket PATH serves sessions on a Unix domain socket
+		//          -sessions N serves at most N sessions at the same time (default 1000)
+		//          -image FILE defines the functions from a heap image before reading input (see HeapImage.java)
+		//          -dump-image FILE writes the functions defined by the end of the run to a heap image
+		// Other arguments are names of the files to be evaluated in batch mode
+		ArrayList<String> files = new ArrayList<>();
+		String imageFile = null;
+		Path dumpFile = null;
+		for(int i = 0; i < args.length; i++){
+			String arg = args[i];
+			if(arg.equals("-port") && i + 1 < args.length)
+				serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[++i]));
+			else if(arg.equals("-socket") && i + 1 < args.length)
+				serverAddress = UnixDomainSocketAddress.of(args[++i]);
+			else if(arg.equals("-sessions") && i + 1 < args.length)
+				maxSessions = Integer.parseInt(args[++i]);
+			else if(arg.equals("-stack"))
+				explicitStack = true;
+			else if(arg.equals("-nomemo"))
+				memoize = false;
+			else if(arg.equals("-stats"))
+				statistics = true;
+			else if(arg.equals("-noecho"))
+				echo = false;
+			else if(arg.equals("-list"))
+				listNotation = true;
+			else if(arg.equals("-hashcons"))
+				SExpression.consTable = new ConsTable();
+			else if(arg.equals("-arena"))
+				Parser.useArena = true;
+			else if(arg.equals("-image") && i + 1 < args.length)
+				imageFile = args[++i];
+			else if(arg.equals("-dump-image") && i + 1 < args.length)
+				dumpFile = Paths.get(args[++i]);
+			else
+				files.add(arg);
+		}
+
+		IntegerAtom.counting = statistics;
+
+		// Functions defined in an expression can be used by all following expressions,
+		// also by the ones in the next files in batch mode
+		Evaluator evaluator = new Evaluator(explicitStack, memoize);
+
+		if(imageFile != null){
+			try{
+				image = new HeapImage(Paths.get(imageFile));
+				image.load(evaluator);
+			}
+			catch(IOException e){
+				System.out.println("** Could not load image " + imageFile + ": " + e.getMessage() + " **");
+				image = null;
+			}
+		}
+
+		if(serverAddress != null){
+			// Every connection gets its own Evaluator, so the one above is not used
+			new Server(serverAddress, maxSessions).serve();
+			return;
+		}
 
-			if(line.equals("$") || line.equals("$$")){
-				// Parse the current input SExp
-				Parser parser = new Parser();
-				Evaluator evaluator = new Evaluator();
+		if(files.isEmpty()){
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out));
+			ExpressionReader reader = new ExpressionReader(new BufferedReader(new InputStreamReader(System.in)));
+			interact(reader, evaluator, out);
+			if(statistics)
+				printStatistics(out, evaluator);
+			if(dumpFile != null)
+				dumpImage(evaluator, dumpFile, out);
+			out.flush();
+			return;
+		}
+
+		// Batch mode
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), BUFFER_SIZE));
+		try{
+			for(String file : files){
+				ExpressionReader reader;
 				try{
-					SExpression SExp = parser.parse(input);
-					System.out.println("Dot Notation:");
-					SExp.printSExpression();
-					System.out.println("Evaluation Result:");
-					SExpression resultSExp = evaluator.eval(SExp);
-					resultSExp.printSExpression();
+					reader = new ExpressionReader(new BufferedReader(new FileReader(file), BUFFER_SIZE));
 				}
-				catch (customException c) {
-					c.printErrorMessage();
+				catch(IOException e){
+					out.println("** Could not read file " + file + " **");
+					continue;
 				}
+				evaluate(reader, evaluator, out, false);
+				reader.close();
+			}
+			if(statistics)
+				printStatistics(out, evaluator);
+			if(dumpFile != null)
+				dumpImage(evaluator, dumpFile, out);
+		}
+		finally{
+			out.flush();
+		}
+	}
+
+	// Ask the user for expressions and evaluate them till '$$' or the end of input
+	public static void interact(ExpressionReader reader, Evaluator evaluator, PrintWriter out) throws IOException{
+		out.println("Enter your input expressions:");
+		out.flush();
 
-				// If '$$' occurs, endOfInput the program
-				if(line.equals("$$")){
-					System.out.println();
-					System.out.println("Done!Bye!");
-					System.exit(0);
+		if(!evaluate(reader, evaluator, out, true)){
+			// If '$$' occurs, endOfInput the program
+			out.println();
+			out.println("Done!Bye!");
+		}
+		out.flush();
+	}
+
+	// Parse and evaluate all expressions from the reader using the given session of the interpreter.
+	// Returns false if '$$' occurs, true at the end of input.
+	public static boolean evaluate(ExpressionReader reader, Evaluator evaluator, PrintWriter out, boolean interactive) throws IOException{
+		while(reader.nextExpression()){
+			// Parse the current input SExp while it is read
+			Parser parser = new Parser();
+			SExpression SExp = null;
+			customException parseError = null;
+			try{
+				SExp = parser.parse(reader);
+			}
+			catch (customException c) {
+				parseError = c;
+			}
+
+			// Only evaluate the input if a '$' occurs after it
+			reader.skipExpression();
+			if(!reader.isComplete())
+				break;
+
+			try{
+				if(parseError != null)
+					throw parseError;
+				if(echo){
+					out.println("Dot Notation:");
+					SExp.printSExpression(out);
 				}
+				out.println("Evaluation Result:");
+				SExpression resultSExp = evaluator.evalTopLevel(SExp);
+				resultSExp.printSExpression(out, listNotation);
+			}
+			catch (customException c) {
+				c.printErrorMessage(out);
+			}
+			finally{
+				if(interactive)
+					out.flush();
+			}
 
-				// Reset the input after a '$' occurs
-				input = "";
+			if(reader.isLast())
+				return false;
 
+			if(interactive){
 				// Ask to enter a new input
-				System.out.println();
-				System.out.println("Enter a new expression:");	
-			}
-			else{
-				// Keep adding newly scanned input to current input SExp
-				input = input + line + "\n";
+				out.println();
+				out.println("Enter a new expression:");
+				out.flush();
 			}
 		}
+		return true;
+	}
+
+	// Write the functions of the session to a heap image
+	public static void dumpImage(Evaluator evaluator, Path file, PrintWriter out){
+		try{
+			HeapImage.dump(evaluator, file);
+		}
+		catch(IOException e){
+			out.println("** Could not write image " + file + ": " + e.getMessage() + " **");
+		}
+	}
+
+	// Print statistics of the interpreter
+	public static void printStatistics(PrintWriter out, Evaluator evaluator){
+		out.println("Integer atoms created: " + IntegerAtom.created.sum() + ", taken from cache: " + IntegerAtom.reused.sum());
+		out.println("Calls to pure functions found in cache: " + evaluator.memoHits + ", not found: " + evaluator.memoMisses);
+
+		ConsTable consTable = SExpression.consTable;
+		if(consTable != null)
+			out.println("Cons cells created: " + consTable.created + ", shared: " + consTable.shared + ", in the table: " + consTable.size());
+
+		ResultCache cache = evaluator.resultCache;
+		long expressions = cache.hits + cache.misses;
+		out.println("Top level expressions found in cache: " + cache.hits + " of " + expressions
+			+ (expressions == 0 ? "" : " (" + (100 * cache.hits / expressions) + "%)"));
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+/**
+ * This class is the result cache of a user defined function. A function is pure if its
+ * body reads only its own parameters, has no DEFUN and calls only pure functions (so it
+ * doesn't depend on variables of the calling functions, which are seen because of the
+ * dynamic scope). Value of a call to a pure function depends only on its arguments and
+ * the DList, so it is kept in the cache and returned for the next call with the same
+ * arguments. Integer arguments are compared by value and others by reference (cells of
+ * an Arena by the cell), which is enough since S-Expressions are never changed and
+ * symbols have only one object.
+ * Purity depends on the functions called, so it is checked again and the cache is
+ * cleared whenever the version of the DList changes. The cache keeps at most SIZE
+ * results and removes the least recently used one. If only a few calls are found in
+ * the cache compared to the results kept, like for a function which is called with a
+ * new argument every time, the cache is not used till the next DEFUN.
+ * @author: Ashwini Joshi
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Memo{
+	// Maximum number of results kept for a function
+	static final int SIZE = 1024;
+	// Number of calls after which the cache is given up if less than 1/16 of them were found
+	static final int SAMPLE = 64;
+
+	// Arguments of a call, used as the key of the cache
+	static class Key{
+		SExpression[] args;
+		int hash;
+
+		Key(SExpression[] args){
+			this.args = args;
+			int hash = 1;
+			for(int i = 0; i < args.length; i++){
+				if(args[i].isInteger())
+					hash = 31 * hash + ((IntegerAtom) args[i]).val;
+				else
+					hash = 31 * hash + args[i].hashCode();
+			}
+			this.hash = hash;
+		}
+
+		public int hashCode(){
+			return hash;
+		}
+
+		public boolean equals(Object other){
+			SExpression[] otherArgs = ((Key) other).args;
+			if(otherArgs.length != args.length)
+				return false;
+			for(int i = 0; i < args.length; i++){
+				if(args[i] == otherArgs[i] || args[i].equals(otherArgs[i]))
+					continue;
+				if(!args[i].isInteger() || !otherArgs[i].isInteger() || ((IntegerAtom) args[i]).val != ((IntegerAtom) otherArgs[i]).val)
+					return false;
+			}
+			return true;
+		}
+	}
+
+	Defun function;
+	// Results of the calls, in the order of their last use
+	LinkedHashMap<Key, SExpression> results = new LinkedHashMap<Key, SExpression>(16, 0.75f, true){
+		protected boolean removeEldestEntry(Map.Entry<Key, SExpression> eldest){
+			return size() > SIZE;
+		}
+	};
+	// DList and its version when the purity was checked
+	DList dList;
+	int version;
+	boolean pure;
+	// False if the function is not pure or the cache didn't help
+	boolean enabled;
+	// Calls found in the cache and results kept since the purity was checked
+	int hits;
+	int stored;
+
+	public Memo(Defun function){
+		this.function = function;
+	}
+
+	// Check if the cache can be used for a call of the function from the given DList
+	public boolean isEnabled(DList functions) throws customException{
+		if(functions != dList || functions.version != version){
+			boolean pure = isPure(function, functions);
+			if(!pure)
+				reset(functions, false);
+		}
+		return enabled;
+	}
+
+	// Start using the cache for the given version of the DList
+	void reset(DList functions, boolean pure){
+		dList = functions;
+		version = functions.version;
+		results.clear();
+		hits = 0;
+		stored = 0;
+		this.pure = pure;
+		enabled = pure;
+	}
+
+	// Value of an earlier call with the same arguments, null if not found
+	public SExpression get(Evaluator evaluator, Key key){
+		SExpression value = results.get(key);
+		if(value != null){
+			hits++;
+			evaluator.memoHits++;
+		}
+		else{
+			evaluator.memoMisses++;
+		}
+		return value;
+	}
+
+	// Keep the value of a call which returned without an error. Calls are counted
+	// only once they return, since a recursive function finds its first results
+	// in the cache only after the deepest call returns.
+	public void put(Key key, SExpression value){
+		if(!enabled)
+			return;
+		results.put(key, value);
+		stored++;
+		if(hits + stored >= SAMPLE && hits * 16 < hits + stored){
+			// Cache doesn't help this function
+			enabled = false;
+			results.clear();
+		}
+	}
+
+	// Check if the function and all functions called by it read only their own parameters
+	// and have no DEFUN. Bodies are walked using a work list instead of recursion, since a
+	// function can call a long chain of other functions. Functions already checked for
+	// this version of the DList are not walked again. If the function is pure, all the
+	// functions reached from it are pure too, so they are marked as checked.
+	static boolean isPure(Defun function, DList functions) throws customException{
+		HashSet<Defun> reached = new HashSet<>();
+		ArrayList<Node> work = new ArrayList<>();
+		reached.add(function);
+		work.add(function.body());
+
+		while(!work.isEmpty()){
+			Node node = work.remove(work.size() - 1);
+			if(node instanceof Node.Variable || node instanceof Node.Define)
+				return false;
+
+			if(node instanceof Node.Cond){
+				Node.Cond cond = (Node.Cond) node;
+				work.addAll(Arrays.asList(cond.conditions));
+				work.addAll(Arrays.asList(cond.expressions));
+				work.add(cond.otherwise);
+			}
+			else if(node instanceof Node.Application){
+				Node.Application application = (Node.Application) node;
+				work.addAll(Arrays.asList(application.args));
+				if(application instanceof Node.Builtin)
+					continue;
+
+				// Call to a user defined function
+				Defun called = functions.getFunction(application.functionName);
+				if(called == null)
+					return false;
+				Memo memo = called.memo;
+				if(memo.dList == functions && memo.version == functions.version){
+					if(!memo.pure)
+						return false;
+				}
+				else if(reached.add(called)){
+					work.add(called.body());
+				}
+			}
+		}
+
+		for(Defun pure : reached){
+			if(pure.memo.dList != functions || pure.memo.version != functions.version)
+				pure.memo.reset(functions, true);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,411 @@
+/**
+ * This class represents a compiled S-Expression. Compiler converts an S-Expression
+ * into a tree of nodes only once, so that evaluating it doesn't have to compare
+ * function names again and again. There is one type of node for every kind of
+ * expression - constants, variables, COND, DEFUN, built-in functions and user
+ * defined functions. Errors which can be detected while compiling are stored in
+ * Failure nodes and raised only when the node is evaluated, at the same point where
+ * the evaluator would have found them.
+ * @author: Ashwini Joshi
+*/
+
+import java.util.ArrayList;
+
+public abstract class Node{
+
+	// Evaluate the compiled expression
+	public abstract SExpression exec(Evaluator evaluator) throws customException;
+
+	// Evaluate the condition of a COND clause. Comparisons override this,
+	// so their result is not converted to T or NIL just to be tested.
+	public boolean execTest(Evaluator evaluator) throws customException{
+		return !exec(evaluator).isNil();
+	}
+
+
+	// T, NIL, integer atoms and quoted S-Expressions evaluate to themselves
+	static class Constant extends Node{
+		SExpression value;
+
+		Constant(SExpression value){
+			this.value = value;
+		}
+
+		public SExpression exec(Evaluator evaluator){
+			return value;
+		}
+	}
+
+
+	// Symbolic atom which is not a parameter of the function, searched by name in the AList
+	static class Variable extends Node{
+		SExpression symbol;
+
+		Variable(SExpression symbol){
+			this.symbol = symbol;
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			return evaluator.aList.getVal(symbol);
+		}
+	}
+
+
+	// Parameter of the function being executed, read from the current frame by its index
+	static class Parameter extends Node{
+		SExpression symbol;
+		int index;
+
+		Parameter(SExpression symbol, int index){
+			this.symbol = symbol;
+			this.index = index;
+		}
+
+		public SExpression exec(Evaluator evaluator){
+			return evaluator.aList.getVal(index);
+		}
+	}
+
+
+	// Parameter of an inlined function, read from the arguments of the call without a frame
+	static class Argument extends Node{
+		SExpression symbol;
+		int index;
+
+		Argument(SExpression symbol, int index){
+			this.symbol = symbol;
+			this.index = index;
+		}
+
+		public SExpression exec(Evaluator evaluator){
+			return evaluator.inlineArgs[index];
+		}
+	}
+
+
+	// Expression which always raises the same evaluation error
+	static class Failure extends Node{
+		String error;
+
+		Failure(String error){
+			this.error = error;
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			throw new customException(error, "Evaluation");
+		}
+	}
+
+
+	// Expression like (QUOTE . 5) which cannot be walked as a list at all.
+	// Same as before, it fails with a NullPointerException, which is reported
+	// as "Could not evaluate" by the function call whose argument it is.
+	static class Malformed extends Node{
+		SExpression SExp;
+
+		Malformed(SExpression SExp){
+			this.SExp = SExp;
+		}
+
+		public SExpression exec(Evaluator evaluator){
+			throw new NullPointerException("Malformed expression " + SExp.displayTree());
+		}
+	}
+
+
+	// COND with its valid clauses. If none of the conditions is true,
+	// otherwise node raises the error found after the last valid clause.
+	static class Cond extends Node{
+		Node[] conditions;
+		Node[] expressions;
+		Node otherwise;
+
+		Cond(ArrayList<Node> conditions, ArrayList<Node> expressions, Node otherwise){
+			this.conditions = conditions.toArray(new Node[0]);
+			this.expressions = expressions.toArray(new Node[0]);
+			this.otherwise = otherwise;
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			for(int i = 0; i < conditions.length; i++){
+				if(conditions[i].execTest(evaluator))
+					return expressions[i].exec(evaluator);
+			}
+			return otherwise.exec(evaluator);
+		}
+	}
+
+
+	// DEFUN is validated and added to the DList every time it is evaluated
+	static class Define extends Node{
+		SExpression definition;
+
+		Define(SExpression definition){
+			this.definition = definition;
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			return evaluator.defun(definition);
+		}
+	}
+
+
+	// Function call with compiled arguments
+	static abstract class Application extends Node{
+		SExpression SExp;
+		String functionName;
+		Node[] args;
+		// True if argument list doesn't end with NIL, e.g. (CONS 1 . 2)
+		boolean dotted;
+
+		// Inline cache for calls to user defined functions: function found last time,
+		// and the DList and its version when it was found
+		Defun defun;
+		DList dList;
+		int version;
+
+		Application(SExpression SExp, String functionName, ArrayList<Node> args, boolean dotted){
+			this.SExp = SExp;
+			this.functionName = functionName;
+			this.args = args.toArray(new Node[0]);
+			this.dotted = dotted;
+		}
+
+		// Evaluate the arguments from left to right
+		SExpression[] evlis(Evaluator evaluator) throws customException{
+			SExpression[] values = new SExpression[args.length];
+			try{
+				for(int i = 0; i < args.length; i++)
+					values[i] = args[i].exec(evaluator);
+			}
+			catch(NullPointerException e){
+				throw new customException("Could not evaluate " + SExp.displayTree() + " **", "Evaluation");
+			}
+			if(dotted)
+				throw new customException("Could not evaluate " + SExp.displayTree() + " **", "Evaluation");
+			return values;
+		}
+
+		// Find the called function in the DList of the evaluator, null if not defined.
+		// Lookup is done only if a function was defined since the last call.
+		Defun resolve(Evaluator evaluator) throws customException{
+			DList functions = evaluator.dList;
+			if(functions != dList || functions.version != version){
+				defun = functions.getFunction(functionName);
+				dList = functions;
+				version = functions.version;
+			}
+			return defun;
+		}
+	}
+
+
+	// Call to one of the built-in functions
+	static class Builtin extends Application{
+		int builtin;
+		// Error for wrong number of arguments, found while compiling and
+		// raised after the arguments are evaluated. null if there is none.
+		String arityError;
+
+		Builtin(SExpression SExp, String functionName, int builtin, ArrayList<Node> args, boolean dotted){
+			super(SExp, functionName, args, dotted);
+			this.builtin = builtin;
+			this.arityError = Evaluator.checkArity(functionName, this.args.length);
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			return apply(evaluator, evlis(evaluator));
+		}
+
+		// Apply the function to the evaluated arguments
+		SExpression apply(Evaluator evaluator, SExpression[] values) throws customException{
+			if(arityError != null)
+				throw new customException(arityError, "Evaluation");
+			return Evaluator.apply(builtin, functionName, values);
+		}
+	}
+
+
+	// Call to PLUS, MINUS, TIMES, QUOTIENT, REMAINDER, LESS or GREATER with two arguments.
+	// If the arguments are only constants, variables and other such calls, nested calls
+	// are evaluated as int, so intermediate values are never boxed. Only the value of the
+	// outermost call is converted to an IntegerAtom, or to T or NIL for a comparison.
+	// Calls whose arguments call functions are evaluated like other built-in functions,
+	// since inlining the function calls into execInt makes the JIT compiled code huge.
+	static class Arithmetic extends Builtin{
+		// True if the value is an integer, false for LESS and GREATER
+		boolean integer;
+		// True if the arguments don't call user defined functions and have no COND,
+		// so the call is evaluated without boxing (and directly by Machine.step)
+		boolean simple = true;
+
+		Arithmetic(SExpression SExp, String functionName, int builtin, ArrayList<Node> args){
+			super(SExp, functionName, builtin, args, false);
+			this.integer = builtin != Evaluator.LESS && builtin != Evaluator.GREATER;
+			for(Node arg : this.args){
+				if(arg instanceof Arithmetic)
+					simple &= ((Arithmetic) arg).simple;
+				else if(arg instanceof Application || arg instanceof Cond || arg instanceof Define)
+					simple = false;
+			}
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			if(!simple)
+				return super.exec(evaluator);
+
+			int value = execInt(evaluator);
+			if(integer)
+				return IntegerAtom.valueOf(value);
+			return value != 0 ? SExpression.T : SExpression.NIL;
+		}
+
+		public boolean execTest(Evaluator evaluator) throws customException{
+			if(!simple)
+				return super.execTest(evaluator);
+
+			// Any integer is a true condition
+			int value = execInt(evaluator);
+			return integer || value != 0;
+		}
+
+		// Evaluate a simple call without boxing, comparisons give 1 for T and 0 for NIL
+		int execInt(Evaluator evaluator) throws customException{
+			int x = 0, y = 0;
+			SExpression first = null, second = null;
+			try{
+				if(args[0] instanceof Arithmetic && ((Arithmetic) args[0]).integer)
+					x = ((Arithmetic) args[0]).execInt(evaluator);
+				else
+					first = args[0].exec(evaluator);
+
+				if(args[1] instanceof Arithmetic && ((Arithmetic) args[1]).integer)
+					y = ((Arithmetic) args[1]).execInt(evaluator);
+				else
+					second = args[1].exec(evaluator);
+			}
+			catch(NullPointerException e){
+				throw new customException("Could not evaluate " + SExp.displayTree() + " **", "Evaluation");
+			}
+
+			// Types are checked after both arguments are evaluated, same as Evaluator.apply()
+			if((first != null && !first.isInteger()) || (second != null && !second.isInteger()))
+				throw new customException("Arguments to " + functionName + " must be integer atoms. **", "Evaluation");
+			if(first != null)
+				x = ((IntegerAtom) first).val;
+			if(second != null)
+				y = ((IntegerAtom) second).val;
+
+			switch(builtin){
+				case Evaluator.PLUS:
+					return x + y;
+				case Evaluator.MINUS:
+					return x - y;
+				case Evaluator.TIMES:
+					return x * y;
+				case Evaluator.QUOTIENT:
+					Evaluator.checkDivisor(y);
+					return x / y;
+				case Evaluator.REMAINDER:
+					Evaluator.checkDivisor(y);
+					return x % y;
+				case Evaluator.LESS:
+					return x < y ? 1 : 0;
+				default:
+					// GREATER
+					return x > y ? 1 : 0;
+			}
+		}
+	}
+
+
+	// Call to a user defined function from the DList
+	static class Call extends Application{
+
+		Call(SExpression SExp, String functionName, ArrayList<Node> args, boolean dotted){
+			super(SExp, functionName, args, dotted);
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			SExpression[] values = evlis(evaluator);
+
+			// Small functions are executed without a frame
+			Defun defun = resolve(evaluator);
+			if(defun != null && defun.canInline(evaluator, values))
+				return defun.execInline(evaluator, values);
+
+			// Value of a pure function may be known from an earlier call with same arguments
+			if(defun == null || !evaluator.memoize || !defun.memo.isEnabled(evaluator.dList))
+				return evaluator.applyFunction(this, values);
+			Memo.Key key = new Memo.Key(values);
+			SExpression value = defun.memo.get(evaluator, key);
+			if(value == null){
+				value = evaluator.applyFunction(this, values);
+				defun.memo.put(key, value);
+			}
+			return value;
+		}
+	}
+
+
+	// Call to a user defined function which is the last step of a function body.
+	// Instead of calling the function here, the call is returned to applyFunction
+	// which executes it in a loop, so tail recursion doesn't use Java stack.
+	static class TailCall extends Application{
+
+		TailCall(SExpression SExp, String functionName, ArrayList<Node> args, boolean dotted){
+			super(SExp, functionName, args, dotted);
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			SExpression[] values = evlis(evaluator);
+
+			// Inlined function doesn't need a frame, so it is executed here
+			Defun defun = resolve(evaluator);
+			if(defun != null && defun.canInline(evaluator, values))
+				return defun.execInline(evaluator, values);
+
+			evaluator.tailCall = this;
+			evaluator.tailArgs = values;
+			return Evaluator.TAIL_CALL;
+		}
+	}
+
+
+	// Call in the body of an inlined function, replaced by the body of the called function
+	// (see Compiler.splice). Arguments are stored in the slots of the called function in
+	// the arguments of the inlined function, so the call needs no frame and no lookup.
+	static class Inlined extends Application{
+		// Index of the first argument in the arguments of the inlined function
+		int slot;
+		Node body;
+
+		Inlined(SExpression SExp, String functionName, ArrayList<Node> args, int slot, Node body){
+			super(SExp, functionName, args, false);
+			this.slot = slot;
+			this.body = body;
+		}
+
+		public SExpression exec(Evaluator evaluator) throws customException{
+			SExpression[] slots = evaluator.inlineArgs;
+			try{
+				for(int i = 0; i < args.length; i++)
+					slots[slot + i] = args[i].exec(evaluator);
+			}
+			catch(NullPointerException e){
+				throw new customException("Could not evaluate " + SExp.displayTree() + " **", "Evaluation");
+			}
+
+			// NIL arguments are removed before a call, so the call has too few arguments
+			int given = args.length;
+			for(int i = 0; i < args.length; i++){
+				if(slots[slot + i].isNil())
+					given--;
+			}
+			if(given != args.length)
+				throw new customException("Function " + functionName + " expects " + args.length + " arguments. " + given + " given. **", "Evaluation");
+
+			return body.exec(evaluator);
+		}
+	}
+}
@@ -1,28 +1,36 @@
 
 /**
  * Defines methods to read a lisp code and convert it to corresponding SExp obj.
- * Uses recursive descent method to parse the S-Expression
+ * Parses the S-Expression like recursive descent method, but keeps the pending work
+ * on an explicit stack so that long and deeply nested lists don't overflow Java stack
  * Error handling is done and appropriate error messages are returned in case
  * @author: Ashwini Joshi
 */
 
 import java.util.*;
+import java.io.Reader;
+import java.io.StringReader;
 
 public class Parser {
+	// Store parsed non-atomic S-Expressions in an Arena instead of Cons objects (-arena option)
+	static boolean useArena = false;
 
 	public SExpression parse(String inputBuffer) throws customException{
+		return parse(new StringReader(inputBuffer));
+	}
+
+	public SExpression parse(Reader input) throws customException{
+		// Get tokens from the input expression
+		Tokenizer tokenizer = new Tokenizer(input);
+
 		// handle empty sexpression
-		if(inputBuffer.isEmpty()){
+		if(tokenizer.isEmpty()){
 			throw new customException("Empty expression entered. Please enter a valid input. **", "Parse");
 
 		}
 		else{
-			// Get tokens from the input expression
-			Tokenizer tokenizer = new Tokenizer(inputBuffer);
-
-			// Start parsing Car of the expression, 
-			// Since no previous left brace is seen, called with seenLeftBrace = false
-			SExpression SExp = parseCar(tokenizer, false);
+			// Parse the expression starting with its car
+			SExpression SExp = parseSExpression(tokenizer);
 
 			// If some characters are left after complete parsing like extra braces or invalid identifiers, throw appropriate error
 			if(tokenizer.hasMoreTokens()){
@@ -33,111 +41,160 @@ public class Parser {
 		}
 	}
 
-	public SExpression parseCar(Tokenizer tokenizer, boolean seenLeftBrace) throws customException{
+	// Work left to be done after the current car or cdr is parsed
+	// Car of a list is parsed after '(', rest of the list has to be parsed as its cdr
+	static final int LIST_CAR = 0;
+	// Cdr is being parsed, car stored with it is used to form new S-Expression
+	static final int CONS = 1;
+	// Part after '.' is parsed, a right brace has to follow it
+	static final int DOT_CDR = 2;
+	// Next element of a list is parsed, rest of the list has to be parsed as its cdr
+	static final int LIST_ELEMENT = 3;
+
+	public SExpression parseSExpression(Tokenizer tokenizer) throws customException{
+		// This function parses the input in the same way as recursive descent with
+		// parseCar and parseCdr calling each other, but the pending work is kept on a
+		// stack instead of Java stack. So nesting and length of lists are limited only by memory.
+		int[] work = new int[16];
+		SExpression[] cars = new SExpression[16];
+		int size = 0;
+		Arena arena = useArena ? new Arena() : null;
+
+		// Parse car or cdr next and whether a left brace is seen just before it
+		boolean parseCar = true;
+		boolean seenLeftBrace = false;
+		SExpression SExp;
+
+		while(true){
+			if(size + 1 >= work.length){
+				work = Arrays.copyOf(work, work.length * 2);
+				cars = Arrays.copyOf(cars, cars.length * 2);
+			}
 
-		if(tokenizer.hasMoreTokens()){
-			if(tokenizer.isLeftBrace()){
-				// Increment count of open brace
-				tokenizer.countBrace++;
-				tokenizer.skipToken();
+			if(!tokenizer.hasMoreTokens()){
+				// If no more tokens left and still car or cdr has to be parsed, input is invalid
+				throw new customException(tokenizer.getError(), "Parse");
+			}
 
-				if(tokenizer.isRightBrace()){
+			if(parseCar){
+				if(tokenizer.isLeftBrace()){
+					// Increment count of open brace
+					tokenizer.countBrace++;
 					tokenizer.skipToken();
-					return SExpression.getFromTable("NIL");
-				}
-
-				// Called with seenLeftBrace = true since a brace is seen
-				SExpression car = parseCar(tokenizer, true);
 
-				// Otherwise parse rest of the input as Cdr
-				if(tokenizer.hasMoreTokens()){
-					SExpression cdr = parseCdr(tokenizer, true);
-
-					// Form new Sexpression with returned Car and Cdr parts
-					return new SExpression(car, cdr);					
+					if(tokenizer.isRightBrace()){
+						tokenizer.skipToken();
+						SExp = SExpression.NIL;
+					}
+					else{
+						// Parse car with seenLeftBrace = true since a brace is seen
+						work[size++] = LIST_CAR;
+						seenLeftBrace = true;
+						continue;
+					}
 				}
-
-				return car;
-
-			}
-			else if(tokenizer.isRightBrace()){
-				// Decrement count of open brace
-				tokenizer.countBrace--;
-				if(seenLeftBrace){
-					tokenizer.skipToken();
-					return SExpression.getFromTable("NIL");
+				else if(tokenizer.isRightBrace()){
+					// Decrement count of open brace
+					tokenizer.countBrace--;
+					if(seenLeftBrace){
+						tokenizer.skipToken();
+						SExp = SExpression.NIL;
+					}
+					else{
+						// If right brace occurs without a previously seen left brace, throw error
+						throw new customException(tokenizer.getError(), "Parse");
+					}
+				}
+				else if(tokenizer.isIdentifier()){
+					// Return SExpression for corresponding identifier
+					SExp = tokenizer.getIdentifier();
+				}
+				else if(tokenizer.isInteger()){
+					// Get SExpression for corresponding integer
+					SExp = tokenizer.getInteger();
 				}
 				else{
-					// If right brace occurs without a previously seen left brace, throw error
+					// If not symbol, integer, left brace or right brace with a previous seen left brace, input is invalid
 					throw new customException(tokenizer.getError(), "Parse");
 				}
 			}
-			else if(tokenizer.isIdentifier()){
-				// Return SExpression for corresponding identifier
-				SExpression SExp = tokenizer.getIdentifier();
-				return SExp;
-			}
-			else if(tokenizer.isInteger()){
-				// Get SExpression for corresponding integer
-				SExpression SExp = tokenizer.getInteger();
-				return SExp;			
-			}
 			else{
-				// If not symbol, integer, left brace or right brace with a previous seen left brace, input is invalid
-				throw new customException(tokenizer.getError(), "Parse");
-			}
-		}
-		else{
-			// If no more tokens left and still parseCar is called, input is invalid
-			throw new customException(tokenizer.getError(), "Parse");
-		}
-	}
-
-	public SExpression parseCdr(Tokenizer tokenizer, boolean seenLeftBrace) throws customException{
-		// For parsing cdr part of input expression
-		if(tokenizer.hasMoreTokens()){
-			if(tokenizer.isRightBrace()){
-				tokenizer.skipToken();
-				// Decrement count of open brace
-				tokenizer.countBrace--;
-				// Left part is parsed and right brace occurs which means it is NIL
-				return SExpression.getFromTable("NIL");
-			}
-			else if(tokenizer.isDot()){
-				if(seenLeftBrace){
+				// For parsing cdr part of input expression
+				if(tokenizer.isRightBrace()){
 					tokenizer.skipToken();
+					// Decrement count of open brace
+					tokenizer.countBrace--;
+					// Left part is parsed and right brace occurs which means it is NIL
+					SExp = SExpression.NIL;
+				}
+				else if(tokenizer.isDot()){
+					if(seenLeftBrace){
+						tokenizer.skipToken();
 
-					// A dot means rest of the part is cdr part of the SExpression
-					// It can be an integer, symbolic atom or a new non-atomic Sexpression so call parseCar to parse it
-					SExpression cdr = parseCar(tokenizer, false);
+						// A dot means rest of the part is cdr part of the SExpression
+						// It can be an integer, symbolic atom or a new non-atomic Sexpression so parse it as car
+						work[size++] = DOT_CDR;
+						parseCar = true;
+						seenLeftBrace = false;
+						continue;
+					}
+					else{
+						// If a dot occurs without previously seen left brace, input is invalid
+						throw new customException(tokenizer.getError(), "Parse");
+					}
+				}
+				else{
+					// If no dot or right brace occurs, parse rest of the input as new input having both car and cdr
+					work[size++] = LIST_ELEMENT;
+					parseCar = true;
+					seenLeftBrace = false;
+					continue;
+				}
+			}
 
+			// Give the parsed S-Expression to the pending work till something else has to be parsed
+			while(size > 0){
+				int pending = work[--size];
+
+				if(pending == CONS){
+					// Form new Sexpression with Car and parsed Cdr parts
+					if(arena != null)
+						SExp = arena.cons(cars[size], SExp);
+					else
+						SExp = SExpression.cons(cars[size], SExp);
+					cars[size] = null;
+				}
+				else if(pending == DOT_CDR){
 					// Once the cdr brace occurs, return the above cdr expression
 					if(tokenizer.hasMoreTokens() && tokenizer.isRightBrace()){
 						tokenizer.skipToken();
 						// Decrement count of open brace
 						tokenizer.countBrace--;
-						return cdr;
 					}
 					else{
 						// If a right brace doesn't occur after parsing input after '.', input is invalid
 						throw new customException(tokenizer.getError(), "Parse");
 					}
 				}
+				else if(pending == LIST_CAR && !tokenizer.hasMoreTokens()){
+					// No more input after car of the list, return the car
+				}
 				else{
-					// If a dot occurs without previously seen left brace, input is invalid
-					throw new customException(tokenizer.getError(), "Parse");
-				}			
+					// Parse rest of the input as cdr
+					cars[size] = SExp;
+					work[size++] = CONS;
+					parseCar = false;
+					seenLeftBrace = pending == LIST_CAR;
+					break;
+				}
 			}
-			else{
-				// If no dot or right brace occurs, parse rest of the input as new input having both car and cdr
-				SExpression car = parseCar(tokenizer, false);
-				SExpression cdr = parseCdr(tokenizer, false);
-				return new SExpression(car, cdr);
+
+			// Nothing is pending, so the whole input expression is parsed
+			if(size == 0){
+				if(arena != null)
+					arena.trim();
+				return SExp;
 			}
 		}
-		else{
-			// If no more tokens left and still parseCdr is called, input is invalid
-			throw new customException(tokenizer.getError(), "Parse");
-		}
 	}
-}
\ No newline at end of file
+}
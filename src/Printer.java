@@ -0,0 +1,123 @@
+/**
+ * This class prints S-Expressions to any Appendable (StringBuilder, PrintWriter, ...)
+ * in dot notation like (A . (B . NIL)) or in list notation like (A B).
+ * The output is appended piece by piece instead of concatenating strings, and only
+ * nesting in the car part is kept on a stack. Cdr part is printed in the same loop,
+ * so long lists don't need any stack at all and deep nesting is limited only by memory.
+ * @author: Ashwini Joshi
+*/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+public class Printer{
+
+	// Print the S-Expression in dot notation
+	public static void printDotNotation(SExpression SExp, Appendable out){
+		try{
+			// Cdr parts left to be printed once their car part is printed
+			// and number of right braces to be printed after each of them
+			SExpression[] rest = new SExpression[16];
+			int[] closing = new int[16];
+			int size = 0;
+
+			// Right braces to be printed after the current S-Expression
+			int braces = 0;
+			while(true){
+				// Print car part of non-atomic S-Expressions till an atom is found
+				while(!SExp.isAtom()){
+					if(size == rest.length){
+						rest = Arrays.copyOf(rest, size * 2);
+						closing = Arrays.copyOf(closing, size * 2);
+					}
+					out.append('(');
+					rest[size] = SExp.cdr();
+					closing[size++] = braces + 1;
+					braces = 0;
+					SExp = SExp.car();
+				}
+
+				out.append(SExp.displayTree());
+				for(int i = 0; i < braces; i++)
+					out.append(')');
+
+				if(size == 0)
+					return;
+
+				// Car part is printed, continue with its cdr part
+				out.append(" . ");
+				SExp = rest[--size];
+				braces = closing[size];
+				rest[size] = null;
+			}
+		}
+		catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Print the S-Expression in list notation, non-atomic S-Expressions whose
+	// last cdr is not NIL are printed like (A B . C)
+	public static void printListNotation(SExpression SExp, Appendable out){
+		try{
+			// Rest of the lists left to be printed once the current element is printed
+			// and number of right braces to be printed after each of them
+			SExpression[] rest = new SExpression[16];
+			int[] closing = new int[16];
+			int size = 0;
+
+			// Right braces to be printed after the current S-Expression
+			int braces = 0;
+			while(true){
+				// Print first element of lists till an atom is found
+				while(!SExp.isAtom()){
+					if(size == rest.length){
+						rest = Arrays.copyOf(rest, size * 2);
+						closing = Arrays.copyOf(closing, size * 2);
+					}
+					out.append('(');
+					rest[size] = SExp.cdr();
+					closing[size++] = braces;
+					braces = 0;
+					SExp = SExp.car();
+				}
+
+				out.append(SExp.displayTree());
+				for(int i = 0; i < braces; i++)
+					out.append(')');
+
+				// Close all the lists which have no more elements
+				while(size > 0 && rest[size - 1].isNil()){
+					size--;
+					rest[size] = null;
+					for(int i = 0; i <= closing[size]; i++)
+						out.append(')');
+				}
+
+				if(size == 0)
+					return;
+
+				SExpression list = rest[--size];
+				braces = closing[size];
+				rest[size] = null;
+				if(list.isAtom()){
+					// Last cdr is not NIL
+					out.append(" . ");
+					braces++;
+					SExp = list;
+				}
+				else{
+					// Next element of the list
+					out.append(' ');
+					rest[size++] = list.cdr();
+					braces = 0;
+					SExp = list.car();
+				}
+			}
+		}
+		catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+}
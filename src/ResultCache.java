@@ -0,0 +1,158 @@
+/**
+ * This class keeps the results of top level expressions evaluated by Main. A top level
+ * expression is evaluated with an empty AList, so its value depends only on the
+ * expression and the functions in the DList. If the same expression is given again and
+ * no function was defined since then, the result is returned without evaluating it.
+ * The key is the dot notation of the parsed expression, so expressions which differ
+ * only in spaces or list and dot notation are the same. Expressions which define a
+ * function (the version of the DList changed while evaluating them) and expressions
+ * which raise an error are not kept. All results are removed once the version of the
+ * DList changes.
+ * Every session has its own cache, so the memory it keeps is bounded: expressions longer
+ * than MAX_KEY characters in dot notation and results with more than MAX_CELLS cells
+ * are not kept, and the least recently used results are removed first once there are
+ * more than SIZE results, more than MAX_KEYS characters in all keys or more than
+ * MAX_TOTAL_CELLS cells in all results.
+ * @author: Ashwini Joshi
+*/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ResultCache{
+	// Maximum number of results kept
+	static final int SIZE = 256;
+	// Maximum length of the dot notation of an expression which is kept, and of all of them
+	static final int MAX_KEY = 4096;
+	static final int MAX_KEYS = 65536;
+	// Maximum number of cells of a result which is kept, and of all of them
+	static final int MAX_CELLS = 4096;
+	static final int MAX_TOTAL_CELLS = 16384;
+
+	// Result with the number of its cells
+	static class Result{
+		SExpression value;
+		int cells;
+
+		Result(SExpression value, int cells){
+			this.value = value;
+			this.cells = cells;
+		}
+	}
+
+	// Appendable which stops the Printer once more than MAX_KEY characters are written
+	static class Key implements Appendable{
+		StringBuilder builder = new StringBuilder();
+
+		public Appendable append(CharSequence text) throws IOException{
+			return append(text, 0, text.length());
+		}
+
+		public Appendable append(CharSequence text, int start, int end) throws IOException{
+			if(builder.length() + end - start > MAX_KEY)
+				throw TOO_LONG;
+			builder.append(text, start, end);
+			return this;
+		}
+
+		public Appendable append(char c) throws IOException{
+			if(builder.length() == MAX_KEY)
+				throw TOO_LONG;
+			builder.append(c);
+			return this;
+		}
+	}
+
+	static final IOException TOO_LONG = new IOException("Expression is too long to be kept");
+
+	// Results in the order of their last use
+	LinkedHashMap<String, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+	// Characters in all keys and cells in all results
+	int keyLength;
+	int cells;
+	// Version of the DList for which the results are valid
+	int version;
+	// Expressions found and not found in the cache
+	long hits;
+	long misses;
+
+	// Key of the expression in the cache, null if it is too long to be kept
+	public static String key(SExpression SExp){
+		Key key = new Key();
+		try{
+			Printer.printDotNotation(SExp, key);
+		}
+		catch(UncheckedIOException e){
+			if(e.getCause() == TOO_LONG)
+				return null;
+			throw e;
+		}
+		return key.builder.toString();
+	}
+
+	// Number of cells of the S-Expression, counted till there are more than max
+	static int cells(SExpression SExp, int max){
+		// Car parts left to be counted
+		ArrayList<SExpression> pending = new ArrayList<>();
+		pending.add(SExp);
+		int count = 0;
+		while(!pending.isEmpty() && count <= max){
+			SExpression next = pending.remove(pending.size() - 1);
+			while(!next.isAtom() && count <= max){
+				count++;
+				if(!next.car().isAtom())
+					pending.add(next.car());
+				next = next.cdr();
+			}
+		}
+		return count;
+	}
+
+	// Result of the same expression evaluated earlier, null if not found
+	public SExpression get(DList functions, String key){
+		if(functions.version != version){
+			results.clear();
+			keyLength = 0;
+			cells = 0;
+			version = functions.version;
+		}
+
+		Result result = key == null ? null : results.get(key);
+		if(result != null){
+			hits++;
+			return result.value;
+		}
+		misses++;
+		return null;
+	}
+
+	// Keep the result of an expression evaluated with given version of the DList
+	public void put(DList functions, int evaluatedVersion, String key, SExpression value){
+		if(key == null || functions.version != evaluatedVersion || version != evaluatedVersion)
+			return;
+		int size = cells(value, MAX_CELLS);
+		if(size > MAX_CELLS)
+			return;
+
+		Result old = results.put(key, new Result(value, size));
+		if(old != null){
+			keyLength -= key.length();
+			cells -= old.cells;
+		}
+		keyLength += key.length();
+		cells += size;
+
+		// Remove the least recently used results till the cache is within its limits
+		Iterator<Map.Entry<String, Result>> eldest = results.entrySet().iterator();
+		while(results.size() > SIZE || keyLength > MAX_KEYS || cells > MAX_TOTAL_CELLS){
+			Map.Entry<String, Result> entry = eldest.next();
+			keyLength -= entry.getKey().length();
+			cells -= entry.getValue().cells;
+			eldest.remove();
+		}
+	}
+}
@@ -1,173 +1,149 @@
 /**
  * This is class defines represents the parsed, in-memory lisp expression.
- * Each S-Expression has a type: 1 integer, 2 symbolic, 3 non-atomic
- * In case the type is an integer atom, the value should of the corresponding
- * integer is stored in int val. For symbolic atoms, the name variable contains
- * the variable name. If it's a non atomic S-Expression, then left and right
- * variables point to the left and the right children nodes respectively,
- * otherwise they are null.
+ * There are three kinds of S-Expressions, each with its own subclass which has
+ * only the fields needed by that kind: IntegerAtom stores the value of the integer,
+ * SymbolicAtom stores the name of the symbol and Cons (non-atomic S-Expression)
+ * stores the car and cdr pointing to the left and the right children nodes.
+ * This class has the functions common to all of them and the built-in functions.
  * @author: Ashwini Joshi
 */
 
 import java.util.*;
-
-public class SExpression{
-	// 1 for integer atom, 2 for symbolic atom, 3 for non-atomic SExpression
-	int type;
-	// For integer atom
-	int val;
-	// For symbolic atom
-	String name;
-	// For non-atomic S-Expression
-	SExpression car, cdr;
-    // Symbol table for identifiers
-    public static HashMap<String, SExpression> map = new HashMap<>();
-
-	// Create S-Expression of integer type
-	public SExpression(int number){
-		type = 1;
-		val = number;
-	}
-
-    // Create S-Expression of string type
-	public SExpression(String str){
-		type = 2;
-		name = str;
-	}
-
-	// Non-atomic S-Expression
-	public SExpression(SExpression car, SExpression cdr){
-		type = 3;
-		this.car = car;
-		this.cdr = cdr;
-	}
+import java.util.concurrent.ConcurrentHashMap;
+import java.io.PrintWriter;
+
+public abstract class SExpression{
+    // Symbol table for identifiers. Symbolic atoms are never changed, so one table is
+    // shared by all sessions of the interpreter and it can be used by many threads.
+    public static final ConcurrentHashMap<String, SExpression> map = new ConcurrentHashMap<>();
+	// T and NIL are added to the symbol table first, so there is only one object for each
+	// and checking for them is just comparing references
+	public static final SExpression T = getFromTable("T");
+	public static final SExpression NIL = getFromTable("NIL");
 
 	// Get Symbolic atomic S-Expression from Symbol Table
 	public static SExpression getFromTable(String identifier){
-		if(map.containsKey(identifier)){
-			return map.get(identifier);
-		}
-		else{
-			SExpression SExp = new SExpression(identifier);
-			map.put(identifier, SExp);
-			return SExp;
+		SExpression SExp = map.get(identifier);
+		if(SExp == null){
+			// If two threads add the same symbol, both get the one which is added first
+			SExp = map.computeIfAbsent(identifier, SymbolicAtom::new);
 		}
+		return SExp;
 	}
 
 	// list of built-in functions 
 	public static SExpression plus(SExpression SExp1, SExpression SExp2){
-		int addition = SExp1.val + SExp2.val;
-		return new SExpression(addition);
+		int addition = ((IntegerAtom) SExp1).val + ((IntegerAtom) SExp2).val;
+		return IntegerAtom.valueOf(addition);
 	}
 
 	public static SExpression minus(SExpression SExp1, SExpression SExp2){
-		int subtraction = SExp1.val - SExp2.val;
-		return new SExpression(subtraction);
+		int subtraction = ((IntegerAtom) SExp1).val - ((IntegerAtom) SExp2).val;
+		return IntegerAtom.valueOf(subtraction);
 	}
 
 	public static SExpression times(SExpression SExp1, SExpression SExp2){
-		int multiplication = SExp1.val * SExp2.val;
-		return new SExpression(multiplication);
+		int multiplication = ((IntegerAtom) SExp1).val * ((IntegerAtom) SExp2).val;
+		return IntegerAtom.valueOf(multiplication);
 	}
 
 	public static SExpression quotient(SExpression SExp1, SExpression SExp2){
-		int quotient = SExp1.val / SExp2.val;
-		return new SExpression(quotient);
+		int quotient = ((IntegerAtom) SExp1).val / ((IntegerAtom) SExp2).val;
+		return IntegerAtom.valueOf(quotient);
 	}
 
 	public static SExpression remainder(SExpression SExp1, SExpression SExp2){
-		int rem = SExp1.val % SExp2.val;
-		return new SExpression(rem);
+		int rem = ((IntegerAtom) SExp1).val % ((IntegerAtom) SExp2).val;
+		return IntegerAtom.valueOf(rem);
 	}
 
 	public static SExpression less(SExpression SExp1, SExpression SExp2){
-		if(SExp1.val < SExp2.val)
-			return getFromTable("T");
+		if(((IntegerAtom) SExp1).val < ((IntegerAtom) SExp2).val)
+			return T;
 		else
-			return getFromTable("NIL");
+			return NIL;
 	}
 
 	public static SExpression greater(SExpression SExp1, SExpression SExp2){
-		if(SExp1.val > SExp2.val)
-			return getFromTable("T");
+		if(((IntegerAtom) SExp1).val > ((IntegerAtom) SExp2).val)
+			return T;
 		else
-			return getFromTable("NIL");
+			return NIL;
 	}
 
 	public static SExpression eq(SExpression SExp1, SExpression SExp2){
-		if(SExp1.type != SExp2.type)
-			return getFromTable("NIL");
-		else{
-			if(SExp1.type == 1 && SExp1.val == SExp2.val)
-				return getFromTable("T");
-			else if(SExp1.type == 2 && SExp1.name == SExp2.name)
-				return getFromTable("T");
-			else
-				return getFromTable("NIL");
-		}
-
+		// Integers are equal if they have same value, symbols are equal only if they
+		// are the same object from symbol table and non-atomic S-Expressions are never equal
+		if(SExp1.isInteger() && SExp2.isInteger() && ((IntegerAtom) SExp1).val == ((IntegerAtom) SExp2).val)
+			return T;
+		else if(SExp1.isSymbol() && SExp1 == SExp2)
+			return T;
+		else
+			return NIL;
 	}
 
+	// Car and cdr of an atom are null
 	public SExpression car(){
-		return this.car;
+		return null;
 	}
 
 	public SExpression cdr(){
-		return this.cdr;
+		return null;
 	}
 
+	// Table of shared cons cells, null unless hash-consing is enabled (see ConsTable.java)
+	public static ConsTable consTable;
+
 	public static SExpression cons(SExpression car, SExpression cdr){
-		return new SExpression(car, cdr);
+		if(consTable != null)
+			return consTable.intern(car, cdr);
+		return new Cons(car, cdr);
 	}
 
 	public boolean isNil(){
-		return type == 2 && name.equals("NIL");
+		return this == NIL;
 	}
 
 	public boolean isT(){
-		return type == 2 && name.equals("T");
+		return this == T;
 	}
 
 	public boolean isAtom(){
-		return type != 3;
+		return true;
 	}
 
 	public boolean isInteger(){
-		return type == 1;
+		return false;
 	}
 
 	public boolean isSymbol(){
-		return type == 2;
+		return false;
 	}
 
-	// Return value of atom as a string for error handling
-	public String getName(){
-		String name = type == 1 ? Integer.toString(this.val) : this.name;
-		return name;
-	}
+	// Return value of atom as a string for error handling, null for non-atomic S-Expression
+	public abstract String getName();
 
-	// Get dot notation for the SExpression using recursion
-	public String displayTree(){
-        String displayString = "";
-        // Integer atom
-        if(type == 1){
-        	displayString = displayString + Integer.toString(val);
-        }
-        // String atom
-        else if(type == 2){
-        	displayString = displayString + name;
-        }
-        // Non-atomic S-Expression
-        else{
-        	displayString = displayString + "(" + car.displayTree() + " . " + cdr.displayTree() + ")";
-        }
-
-        return displayString;
-	}
+	// Get dot notation for the SExpression
+	public abstract String displayTree();
 
 	// Get the dot notation and print it
 	public void printSExpression(){
-		String output = displayTree();
-		System.out.println("> " + output);
+		PrintWriter out = new PrintWriter(System.out);
+		printSExpression(out);
+		out.flush();
+	}
+
+	public void printSExpression(PrintWriter out){
+		printSExpression(out, false);
+	}
+
+	// Print the SExpression in dot notation or list notation
+	public void printSExpression(PrintWriter out, boolean listNotation){
+		out.print("> ");
+		if(listNotation)
+			Printer.printListNotation(this, out);
+		else
+			Printer.printDotNotation(this, out);
+		out.println();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,134 @@
+/**
+ * This class runs the interpreter as a server on a local TCP port or a Unix domain socket.
+ * Every connection is a separate session which works like the interpreter on standard
+ * input: prompts are sent, each expression ends with a line '$' and '$$' ends the session.
+ * A session has its own Evaluator (with its own DList and AList) and its own output buffer,
+ * which is sent after every expression, and runs in its own thread. Virtual threads are
+ * used if the JVM has them (Java 21 and later), so sessions waiting for input cost almost
+ * nothing. Otherwise a pool of platform threads is used. At most maxSessions sessions are
+ * served at the same time, other connections get an error message and are closed.
+ * @author: Ashwini Joshi
+*/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+public class Server{
+	// Size of the input and output buffers of a session
+	static final int BUFFER_SIZE = 1 << 13;
+
+	ServerSocketChannel channel;
+	SocketAddress address;
+	Semaphore sessions;
+	ExecutorService executor;
+
+	public Server(SocketAddress address, int maxSessions) throws IOException{
+		this.address = address;
+		this.sessions = new Semaphore(maxSessions);
+		this.executor = newExecutor();
+
+		if(address instanceof UnixDomainSocketAddress){
+			channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			channel.bind(address);
+			// Socket file is not removed when the channel is closed
+			new File(((UnixDomainSocketAddress) address).getPath().toString()).deleteOnExit();
+		}
+		else{
+			channel = ServerSocketChannel.open();
+			channel.bind(address);
+		}
+	}
+
+	// Executor which runs every task in a new virtual thread if the JVM has virtual threads,
+	// otherwise in a pool of platform threads
+	static ExecutorService newExecutor(){
+		try{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException e){
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	// Accept connections till the server is closed
+	public void serve() throws IOException{
+		System.out.println("Serving sessions on " + address);
+		try{
+			while(channel.isOpen()){
+				SocketChannel client = channel.accept();
+				if(!sessions.tryAcquire()){
+					reject(client);
+					continue;
+				}
+				executor.execute(() -> {
+					try{
+						session(client);
+					}
+					finally{
+						sessions.release();
+					}
+				});
+			}
+		}
+		finally{
+			close();
+		}
+	}
+
+	// Tell the client that there are too many sessions and close the connection
+	void reject(SocketChannel client){
+		try(SocketChannel connection = client){
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(connection), StandardCharsets.UTF_8));
+			out.println("** Too many sessions. Please try again later. **");
+			out.flush();
+		}
+		catch(IOException e){
+			// Client is already gone
+		}
+	}
+
+	// Serve one session with its own Evaluator till '$$' or the end of input
+	void session(SocketChannel client){
+		try(SocketChannel connection = client){
+			ExpressionReader reader = new ExpressionReader(new BufferedReader(
+				new InputStreamReader(Channels.newInputStream(connection), StandardCharsets.UTF_8), BUFFER_SIZE));
+			PrintWriter out = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(Channels.newOutputStream(connection), StandardCharsets.UTF_8), BUFFER_SIZE));
+			try{
+				// Every session starts with the functions of the heap image
+				Evaluator evaluator = new Evaluator(Main.explicitStack, Main.memoize);
+				if(Main.image != null)
+					Main.image.load(evaluator);
+				Main.interact(reader, evaluator, out);
+			}
+			catch(RuntimeException | StackOverflowError e){
+				// An expression which crashes the interpreter ends only its own session
+				out.println("** Session ended because of an internal error: " + e + " **");
+				out.flush();
+			}
+		}
+		catch(IOException e){
+			// Client closed the connection
+		}
+	}
+
+	public void close() throws IOException{
+		channel.close();
+		executor.shutdown();
+	}
+}
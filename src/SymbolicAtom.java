@@ -0,0 +1,29 @@
+/**
+ * This class represents a symbolic atom. It only stores the name of the symbol.
+ * Symbolic atoms are created only by the symbol table (see SExpression.getFromTable),
+ * so there is only one object for each name.
+ * @author: Ashwini Joshi
+*/
+
+public final class SymbolicAtom extends SExpression{
+	String name;
+	// Number of the symbol in arenas, -1 till it is first stored in one (see Arena.java)
+	volatile int id = -1;
+
+	// Create S-Expression of string type
+	public SymbolicAtom(String str){
+		name = str;
+	}
+
+	public boolean isSymbol(){
+		return true;
+	}
+
+	public String getName(){
+		return name;
+	}
+
+	public String displayTree(){
+		return name;
+	}
+}
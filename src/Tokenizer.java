@@ -1,43 +1,54 @@
 /**
- * This is a helper class to extract tokens from the the input. 
- * First, it replaces all kinds of spaces (multiple, whitespace etc.)
- * Later, it inserts spaces vefore and after - '(', ')', '.'
- * Now, after splitting at a single space (' '), tokens are obtained.
- * @author: Ashwini Joshi 
+ * This is a helper class to extract tokens from the the input.
+ * Input is read from a Reader one character at a time and only the current token
+ * is kept. Spaces of all kinds separate tokens and '(', ')', '.' are always tokens
+ * by themselves. Every other token is read till a space, brace, dot or end of input,
+ * and while reading it, it is also checked if the token is a symbol, an integer
+ * or has an invalid or lower case character. So no regular expressions are needed.
+ * @author: Ashwini Joshi
 */
 
-import java.util.regex.*;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 
 public class Tokenizer{
+	// Types of tokens
+	static final int LEFT_BRACE = 0;
+	static final int RIGHT_BRACE = 1;
+	static final int DOT = 2;
+	static final int IDENTIFIER = 3;
+	static final int INTEGER = 4;
+	static final int OTHER = 5;
+	static final int END = 6;
+
+	// Characters which are not allowed in symbols and integers
+	static final String INVALID_CHARACTERS = "~#@$*%{}<>[]|\"_^";
+
+	Reader reader;
+	char[] buffer = new char[8192];
+	int position;
+	int limit;
+
+	// Current token, its type and the first invalid and lower case character in it (-1 if none)
+	int type;
+	StringBuilder token = new StringBuilder();
+	int invalidCharacter;
+	int lowerCaseCharacter;
+	// True if there are no characters in the input at all
+	boolean empty;
 
-	String inputLine;
-	int numberOfTokens;
-	int currentToken;
-	String[] tokens;
     boolean intLimitExceeded;
     boolean symbolLimitExceeded;
     int countBrace;
 
 	public Tokenizer(String input){
-		inputLine = input;
-
-		// Insert spaces before and after ')', '(', '.' to get tokens
-		inputLine = inputLine.replaceAll("\\(", " ( ");
-		inputLine = inputLine.replaceAll("\\)", " ) ");
-		inputLine = inputLine.replaceAll("\\.", " . ");
-
-		// Replace all types of spaces with a single space " "
-		inputLine = inputLine.replaceAll("\\s+", " ");
-		// Trim leading and trailing spaces
-		inputLine = inputLine.trim();
-
-		// Since all types are spaces are replaced with a single space, we can get token by splitting at 
-		tokens = inputLine.split(" ");
+		this(new StringReader(input));
+	}
 
-		// Number of tokens and current token
-		numberOfTokens = tokens.length;
-		currentToken = 0;
+	public Tokenizer(Reader input){
+		reader = input;
 
         // No limit exceeded yet
         intLimitExceeded = false;
@@ -45,94 +56,185 @@ public class Tokenizer{
 
         // No braces seen
         countBrace = 0;
+
+		// Read the first token. Input with only spaces has a single empty token.
+		empty = peek() == -1;
+		nextToken();
+		if(type == END)
+			type = OTHER;
+	}
+
+	// Return next character from the input without reading it, -1 at the end of input
+	int peek(){
+		if(position == limit){
+			try{
+				limit = reader.read(buffer, 0, buffer.length);
+			}
+			catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+			position = 0;
+			if(limit <= 0){
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position];
+	}
+
+	static boolean isSpace(int c){
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	// Read the next token from the input
+	void nextToken(){
+		token.setLength(0);
+		invalidCharacter = -1;
+		lowerCaseCharacter = -1;
+
+		// Skip all spaces
+		int c = peek();
+		while(isSpace(c)){
+			position++;
+			c = peek();
+		}
+
+		if(c == -1){
+			type = END;
+			return;
+		}
+
+		position++;
+		token.append((char) c);
+		if(c == '('){
+			type = LEFT_BRACE;
+			return;
+		}
+		if(c == ')'){
+			type = RIGHT_BRACE;
+			return;
+		}
+		if(c == '.'){
+			type = DOT;
+			return;
+		}
+
+		// Symbols start with upper case followed by 0 or more upper case letters and digits
+		// Integers have one or more digits with optional '+' or '-' sign
+		boolean identifier = c >= 'A' && c <= 'Z';
+		boolean integer = c == '+' || c == '-' || (c >= '0' && c <= '9');
+		boolean digits = c >= '0' && c <= '9';
+
+		while(true){
+			if(invalidCharacter < 0 && INVALID_CHARACTERS.indexOf(c) >= 0)
+				invalidCharacter = c;
+			if(lowerCaseCharacter < 0 && c >= 'a' && c <= 'z')
+				lowerCaseCharacter = c;
+
+			c = peek();
+			if(c == -1 || isSpace(c) || c == '(' || c == ')' || c == '.')
+				break;
+			position++;
+			token.append((char) c);
+
+			boolean digit = c >= '0' && c <= '9';
+			identifier = identifier && ((c >= 'A' && c <= 'Z') || digit);
+			integer = integer && digit;
+			digits = digits || digit;
+		}
+
+		if(identifier)
+			type = IDENTIFIER;
+		else if(integer && digits)
+			type = INTEGER;
+		else
+			type = OTHER;
+	}
+
+	// Check if input is empty
+	public boolean isEmpty(){
+		return empty;
 	}
 
 	// Check if an identifier
 	public boolean isIdentifier(){
-		// Pattern to match symbols starting with upper case followed by 0 or more upper case letters and digits
-		Matcher matchIdentifier = Pattern.compile("[A-Z][A-Z0-9]*").matcher(tokens[currentToken]);
-		return matchIdentifier.matches();
+		return type == IDENTIFIER;
 	}
 
 	// Get the current token as identifier
 	public SExpression getIdentifier() throws customException{
-		String identifier = tokens[currentToken];
 		// Check for length limit
-		if(identifier.length() > 10){
+		if(token.length() > 10){
 			symbolLimitExceeded = true;
 			throw new customException(getError(), "Parsing");
 		}
-		currentToken++;
+		String identifier = token.toString();
+		nextToken();
 		return SExpression.getFromTable(identifier);
 	}
 
 	// Check if an integer
 	public boolean isInteger(){
-		// Pattern to match integers with optional '+' or '-' sign
-		Matcher matchInteger= Pattern.compile("[+-]?\\d+").matcher(tokens[currentToken]);
-		return matchInteger.matches();
+		return type == INTEGER;
 	}
 
 	// Get integer at current index
 	public SExpression getInteger() throws customException {
-		String num = tokens[currentToken];
 		// Check for length limit
-		if(num.length() > 6){
+		if(token.length() > 6){
 			intLimitExceeded = true;
 			throw new customException(getError(), "Parsing");
 		}
-		currentToken++;
-		return new SExpression(Integer.parseInt(num));		
+
+		int start = token.charAt(0) == '+' || token.charAt(0) == '-' ? 1 : 0;
+		int number = 0;
+		for(int i = start; i < token.length(); i++)
+			number = number * 10 + (token.charAt(i) - '0');
+		if(token.charAt(0) == '-')
+			number = -number;
+
+		nextToken();
+		return IntegerAtom.valueOf(number);
 	}
 
 	// Check if current token is a dot
 	public boolean isDot(){
-		return tokens[currentToken].equals(".");
+		return type == DOT;
 	}
 
 	// heck if current token is a left brace
 	public boolean isLeftBrace(){
-		return tokens[currentToken].equals("(");
-	} 
+		return type == LEFT_BRACE;
+	}
 
 	// Check if current token is a right brace
 	public boolean isRightBrace(){
-		return tokens[currentToken].equals(")");
-	} 
+		return type == RIGHT_BRACE;
+	}
 
 	// Check if input has more token left to be parsed
 	public boolean hasMoreTokens(){
-		return currentToken < numberOfTokens;
+		return type != END;
 	}
 
 	// Skip current token
 	public void skipToken(){
-		currentToken++;
+		nextToken();
 	}
 
-	// Check if current index has any invalid character
+	// Check if current token has any invalid character
 	public String checkIfInvalid(){
 		String found = null;
-		// Check if symbol or integer has invalid characters
-		Matcher matchInvalidCharacters = Pattern.compile("[~#@$*%{}<>\\[\\]|\"\\_^]").matcher(tokens[currentToken]);
-		if(matchInvalidCharacters.find()){
-			int start_index = matchInvalidCharacters.start();
-			found = Character.toString(tokens[currentToken].charAt(start_index));
-		};
-
+		if(invalidCharacter >= 0)
+			found = Character.toString((char) invalidCharacter);
 		return found;
 	}
 
-	// Check if input has lower case character 
+	// Check if current token has lower case character
 	public String checkIfLowerCase(){
 		String found = null;
-		// Check if lower case character is entered
-		Matcher matchLowerCaseCharacter = Pattern.compile("[a-z]").matcher(tokens[currentToken]);
-		if(matchLowerCaseCharacter.find()){
-			int start_index = matchLowerCaseCharacter.start();
-			found = Character.toString(tokens[currentToken].charAt(start_index));
-		}
-
+		if(lowerCaseCharacter >= 0)
+			found = Character.toString((char) lowerCaseCharacter);
 		return found;
 	}
 
@@ -154,15 +256,12 @@ public class Tokenizer{
 		else if(isRightBrace()){
 			error = "Unexpected Extra Right Brace.**";
 		}
-		else if(isLeftBrace()){
-			error = "Unexpected Left Brace.**";
-		}
 		else if(symbolLimitExceeded){
-			error = "Symbol Length Limit Exceeded for Symbol '" + tokens[currentToken] + "' **";
+			error = "Symbol Length Limit Exceeded for Symbol '" + token + "' **";
 			symbolLimitExceeded = false;
 		}
 		else if(intLimitExceeded){
-			error = "Integer Length Limit Exceeded for Integer '" + tokens[currentToken] + "' **";
+			error = "Integer Length Limit Exceeded for Integer '" + token + "' **";
 			intLimitExceeded = false;
 		}
 		else if(checkIfInvalid() != null){
@@ -171,15 +270,15 @@ public class Tokenizer{
 		else if(checkIfLowerCase() != null){
 			error = "Lower Case character '" + checkIfLowerCase() + "' found while parsing parsing input expression. **";
 		}
-		else if(tokens[currentToken].equals("+")){
+		else if(token.toString().equals("+")){
 			error = "Invalid Character '+' found while parsing. If you wish to enter an integer, please remove spaces.";
 		}
-		else if(tokens[currentToken].equals("-")){
+		else if(token.toString().equals("-")){
 			error = "Invalid Character '-' found while parsing. If you wish to enter an integer, please remove spaces.";
 		}
 		else
-			error = "Unexpected token '" + tokens[currentToken] + "' found while parsing input. Please check if you have entered a valid input expression.**";
+			error = "Unexpected token '" + token + "' found while parsing input. Please check if you have entered a valid input expression.**";
 
 		return error;
 	}
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@
 */
 
 import java.util.*;
+import java.io.PrintWriter;
 
 public class customException extends Exception{
 	String error;
@@ -19,4 +20,8 @@ public class customException extends Exception{
 		System.out.println(error);
 	}
 
+	public void printErrorMessage(PrintWriter out){
+		out.println(error);
+	}
+
 }
\ No newline at end of file